@@ -0,0 +1,30 @@
+package com.example.multiuser_online_editing.config;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.type.BasicType;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * 注册JPQL函数 match_against(列, 搜索词)，用于高级搜索的标题、正文条件
+ * MySQL上使用ngram全文索引按短语匹配（返回相关度，匹配时大于0）；
+ * 其他数据库（例如测试使用的H2）没有全文索引，退化为子串查找
+ * 通过 META-INF/services/org.hibernate.boot.model.FunctionContributor 注册
+ */
+public class FullTextFunctionContributor implements FunctionContributor {
+
+    @Override
+    public void contributeFunctions(FunctionContributions functionContributions) {
+        BasicType<Double> doubleType = functionContributions.getTypeConfiguration()
+                .getBasicTypeRegistry().resolve(StandardBasicTypes.DOUBLE);
+
+        if (functionContributions.getDialect() instanceof MySQLDialect) {
+            functionContributions.getFunctionRegistry().registerPattern("match_against",
+                    "match(?1) against(concat('\"', ?2, '\"') in boolean mode)", doubleType);
+        } else {
+            functionContributions.getFunctionRegistry().registerPattern("match_against",
+                    "locate(?2, ?1)", doubleType);
+        }
+    }
+}
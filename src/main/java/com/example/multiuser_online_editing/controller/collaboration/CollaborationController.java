@@ -3,16 +3,21 @@ package com.example.multiuser_online_editing.controller.collaboration;
 import com.example.multiuser_online_editing.controller.ApiResponse;
 import com.example.multiuser_online_editing.entity.user_management.User;
 import com.example.multiuser_online_editing.service.collaboration.CollaborationService;
+import com.example.multiuser_online_editing.service.collaboration.CursorAggregator;
+import com.example.multiuser_online_editing.service.collaboration.DocumentSyncService;
+import com.example.multiuser_online_editing.service.collaboration.PresenceUser;
+import com.example.multiuser_online_editing.service.collaboration.TextOperation;
 import com.example.multiuser_online_editing.service.user_management.UserService;
+import com.example.multiuser_online_editing.util.StompAuthChannelInterceptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageMapping;
-import org.springframework.messaging.handler.annotation.SendTo;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.ArrayList;
+import java.security.Principal;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +32,12 @@ public class CollaborationController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private DocumentSyncService documentSyncService;
+
+    @Autowired
+    private CursorAggregator cursorAggregator;
+
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
 
@@ -57,12 +68,14 @@ public class CollaborationController {
      * 离开文档协作
      */
     @PostMapping("/{documentId}/leave")
-    public ResponseEntity<ApiResponse<Object>> leaveDocument(@PathVariable Long documentId) {
+    public ResponseEntity<ApiResponse<Object>> leaveDocument(
+            @PathVariable Long documentId,
+            @RequestBody(required = false) LeaveDocumentRequest request) {
         try {
             Long currentUserId = userService.getCurrentUserId();
-            User currentUser = userService.getUserProfile(currentUserId);
 
-            collaborationService.leaveDocument(documentId, currentUserId);
+            String sessionId = request != null ? request.getSessionId() : null;
+            collaborationService.leaveDocument(documentId, currentUserId, sessionId);
 
             return ResponseEntity.ok(ApiResponse.success("离开文档协作成功"));
         } catch (RuntimeException e) {
@@ -77,69 +90,113 @@ public class CollaborationController {
     public ResponseEntity<ApiResponse<Object>> getOnlineUsers(@PathVariable Long documentId) {
         try {
             Long currentUserId = userService.getCurrentUserId();
-            User currentUser = userService.getUserProfile(currentUserId);
+            collaborationService.checkDocumentPermission(documentId, currentUserId);
 
-            List<User> onlineUsers = collaborationService.getOnlineUsers(documentId);
-
-            List<Map<String, Object>> onlineUsers_res = new ArrayList<>();
-            for (User user: onlineUsers) {
-                Map<String, Object> user_res = new HashMap<>();
-                user_res.put("id", user.getId());
-                user_res.put("avatar_path", user.getAvatarPath());
-                user_res.put("username", user.getUsername());
-                user_res.put("email", user.getEmail());
-                user_res.put("phone", user.getPhone());
-                user_res.put("full_name", user.getFullName());
-                user_res.put("role", user.getRole());
-                user_res.put("biography", user.getBio());
-                onlineUsers_res.add(user_res);
-            }
+            List<PresenceUser> onlineUsers = collaborationService.getOnlineUsers(documentId);
 
             Map<String, Object> responseData = new HashMap<>();
-            responseData.put("onlineUsers", onlineUsers_res);
+            responseData.put("onlineUsers", onlineUsers);
             responseData.put("count", onlineUsers.size());
 
-            System.out.println("number of online users: " + ((ArrayList)(responseData.get("onlineUsers"))).size());
-
             return ResponseEntity.ok(ApiResponse.success("获取在线用户成功", responseData));
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         }
     }
 
+    /**
+     * 获取文档当前的权威内容和版本号（客户端加入协作或需要重新同步时调用）
+     */
+    @GetMapping("/{documentId}/snapshot")
+    public ResponseEntity<ApiResponse<Object>> getSnapshot(@PathVariable Long documentId) {
+        try {
+            Long currentUserId = userService.getCurrentUserId();
+            collaborationService.checkDocumentPermission(documentId, currentUserId);
+
+            Map<String, Object> responseData = documentSyncService.getSnapshot(documentId);
+
+            return ResponseEntity.ok(ApiResponse.success("获取文档快照成功", responseData));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    /**
+     * 断线重连后追赶文档：只返回客户端已知版本之后的操作，落后太多时返回完整快照
+     */
+    @GetMapping("/{documentId}/catch-up")
+    public ResponseEntity<ApiResponse<Object>> catchUp(
+            @PathVariable Long documentId,
+            @RequestParam Long version) {
+        try {
+            Long currentUserId = userService.getCurrentUserId();
+            collaborationService.checkDocumentPermission(documentId, currentUserId);
+
+            Map<String, Object> responseData = documentSyncService.catchUp(documentId, version);
+
+            return ResponseEntity.ok(ApiResponse.success("获取文档更新成功", responseData));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
     // WebSocket消息处理
 
     /**
-     * 处理实时内容更新
+     * 处理实时编辑操作
+     * 客户端只发送基于某个版本的操作，服务端变换并应用后向所有订阅者广播变换后的操作
+     * 文档访问权限已由StompAuthChannelInterceptor按会话检查并缓存，这里不再查询数据库
      */
     @MessageMapping("/document/{documentId}/content")
-    @SendTo("/topic/document/{documentId}/content")
-    public ContentUpdateMessage handleContentUpdate(
+    public void handleContentUpdate(
             @DestinationVariable Long documentId,
-            ContentUpdateMessage message) {
+            OperationMessage message,
+            Principal principal) {
         try {
-            collaborationService.checkDocumentExistence(documentId);
-            return message;
+            Long userId = StompAuthChannelInterceptor.getUserId(principal);
+            documentSyncService.applyOperation(documentId, message.getBaseVersion(),
+                    TextOperation.fromJson(message.getOperation()), userId, message.getClientId());
         } catch (Exception e) {
-            // 处理错误
-            return new ContentUpdateMessage("", 0L);
+            // 操作被拒绝，只通知提交者（发送到提交者自己的会话）重新同步，不广播给文档的其他订阅者
+            Map<String, Object> rejection = new HashMap<>();
+            rejection.put("type", "rejected");
+            rejection.put("clientId", message.getClientId());
+            rejection.put("message", e.getMessage());
+            messagingTemplate.convertAndSendToUser(principal.getName(),
+                    "/queue/document/" + documentId + "/rejections", rejection);
         }
     }
 
     /**
-     * 处理光标位置更新
+     * 处理在线心跳，同时把客户端会话绑定到当前WebSocket连接，连接断开时据此自动下线
      */
-    @MessageMapping("/document/{documentId}/cursor")
-    @SendTo("/topic/document/{documentId}/cursors")
-    public CursorUpdateMessage handleCursorUpdate(
+    @MessageMapping("/document/{documentId}/heartbeat")
+    public void handleHeartbeat(
             @DestinationVariable Long documentId,
-            CursorUpdateMessage message) {
+            HeartbeatMessage message,
+            @Header("simpSessionId") String wsSessionId,
+            Principal principal) {
         try {
-            collaborationService.checkDocumentExistence(documentId);
-            return message;
+            Long userId = StompAuthChannelInterceptor.getUserId(principal);
+            collaborationService.heartbeat(documentId, userId, message.getSessionId(), wsSessionId);
         } catch (Exception e) {
-            // 处理错误
-            return new CursorUpdateMessage(0, 0L);
+            // 心跳失败不影响编辑，会话过期后自动下线
+        }
+    }
+
+    /**
+     * 处理光标位置更新
+     * 只记录最新位置，由CursorAggregator按固定频率合并广播
+     */
+    @MessageMapping("/document/{documentId}/cursor")
+    public void handleCursorUpdate(
+            @DestinationVariable Long documentId,
+            CursorUpdateMessage message,
+            Principal principal) {
+        // 以连接认证的用户为准，不信任消息中的userId
+        Long userId = StompAuthChannelInterceptor.getUserId(principal);
+        if (userId != null && message.getPosition() != null) {
+            cursorAggregator.update(documentId, userId, message.getPosition());
         }
     }
 
@@ -151,22 +208,32 @@ public class CollaborationController {
         public void setSessionId(String sessionId) { this.sessionId = sessionId; }
     }
 
-    // WebSocket消息类
-    static class ContentUpdateMessage {
-        private String content;
-        private Long userId;
+    static class LeaveDocumentRequest {
+        private String sessionId;
 
-        public ContentUpdateMessage() {}
+        public String getSessionId() { return sessionId; }
+        public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+    }
 
-        public ContentUpdateMessage(String content, Long userId) {
-            this.content = content;
-            this.userId = userId;
-        }
+    // WebSocket消息类
+    static class HeartbeatMessage {
+        private String sessionId; // 加入协作时使用的客户端会话ID
 
-        public String getContent() { return content; }
-        public void setContent(String content) { this.content = content; }
-        public Long getUserId() { return userId; }
-        public void setUserId(Long userId) { this.userId = userId; }
+        public String getSessionId() { return sessionId; }
+        public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+    }
+
+    static class OperationMessage {
+        private Long baseVersion; // 操作所基于的文档版本
+        private List<Object> operation; // 形如 [5, "abc", -3]：保留5个字符，插入"abc"，删除3个字符
+        private String clientId;
+
+        public Long getBaseVersion() { return baseVersion; }
+        public void setBaseVersion(Long baseVersion) { this.baseVersion = baseVersion; }
+        public List<Object> getOperation() { return operation; }
+        public void setOperation(List<Object> operation) { this.operation = operation; }
+        public String getClientId() { return clientId; }
+        public void setClientId(String clientId) { this.clientId = clientId; }
     }
 
     static class CursorUpdateMessage {
@@ -2,11 +2,15 @@ package com.example.multiuser_online_editing.controller.document_management;
 
 import com.example.multiuser_online_editing.controller.ApiResponse;
 import com.example.multiuser_online_editing.entity.document_management.Document;
+import com.example.multiuser_online_editing.entity.document_management.DocumentDraft;
 import com.example.multiuser_online_editing.entity.document_management.DocumentType;
 import com.example.multiuser_online_editing.entity.document_management.Tag;
 import com.example.multiuser_online_editing.entity.user_management.User;
+import com.example.multiuser_online_editing.repository.document_management.DocumentSummary;
 import com.example.multiuser_online_editing.service.document_management.DocumentClass;
 import com.example.multiuser_online_editing.service.document_management.DocumentService;
+import com.example.multiuser_online_editing.service.document_management.DocumentSummarySlice;
+import com.example.multiuser_online_editing.service.document_management.DraftService;
 import com.example.multiuser_online_editing.service.user_management.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -38,8 +42,6 @@ public class DocumentController {
         document_res.put("createdAt", document.getCreatedAt());
         document_res.put("updatedAt", document.getUpdatedAt());
         document_res.put("version", document.getVersion());
-        document_res.put("autoSaveContent", document.getAutoSaveContent());
-        document_res.put("autoSaveTime", document.getAutoSaveTime());
 
         List<User> collaborators = document.getCollaborators();
         List<String> collaboratorsUsername = new ArrayList<>();
@@ -60,15 +62,43 @@ public class DocumentController {
         return document_res;
     }
 
-    public static List<Map<String, Object>> documentsToMaps(List<Document> documents) {
+    // 列表中的文档只返回摘要，完整内容只由文档详情接口返回
+    public static Map<String, Object> summaryToMap(DocumentSummary summary) {
+        Map<String, Object> document_res = new HashMap<>();
+        document_res.put("id", summary.getId());
+        document_res.put("title", summary.getTitle());
+        document_res.put("snippet", summary.getSnippet());
+        document_res.put("owner", summary.getOwner());
+        document_res.put("status", summary.getStatus());
+        document_res.put("type", summary.getType());
+        document_res.put("createdAt", summary.getCreatedAt());
+        document_res.put("updatedAt", summary.getUpdatedAt());
+        document_res.put("version", summary.getVersion());
+        document_res.put("collaboratorsCount", summary.getCollaboratorsCount());
+        document_res.put("tags", summary.getTags());
+        document_res.put("folder", summary.getFolder());
+        if (summary.getHighlights() != null)
+            document_res.put("highlights", summary.getHighlights());
+        return document_res;
+    }
+
+    public static List<Map<String, Object>> summariesToMaps(List<DocumentSummary> summaries) {
         List<Map<String, Object>> documents_res = new ArrayList<>();
-        for (Document document : documents)
-            documents_res.add(documentToMap(document));
+        for (DocumentSummary summary : summaries)
+            documents_res.add(summaryToMap(summary));
         return documents_res;
     }
 
-    public static List<Map<String, Object>> documentsToMaps(Page<Document> documents) {
-        return documentsToMaps(documents.getContent());
+    public static List<Map<String, Object>> summariesToMaps(Page<DocumentSummary> summaries) {
+        return summariesToMaps(summaries.getContent());
+    }
+
+    private static Map<String, Object> sliceToMap(DocumentSummarySlice slice) {
+        Map<String, Object> responseData = new HashMap<>();
+        responseData.put("documents", summariesToMaps(slice.getDocuments()));
+        responseData.put("nextCursor", slice.getNextCursor());
+        responseData.put("hasMore", slice.hasMore());
+        return responseData;
     }
 
     @Autowired
@@ -77,6 +107,9 @@ public class DocumentController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private DraftService draftService;
+
     // 创建文档
     @PostMapping
     public ResponseEntity<ApiResponse<Object>> createDocument(
@@ -169,7 +202,8 @@ public class DocumentController {
             Long currentUserId = userService.getCurrentUserId();
             User currentUser = userService.getUserProfile(currentUserId);
 
-            documentService.autoSaveDocument(documentId, request.getContent(), currentUser);
+            documentService.autoSaveDocument(documentId, request.getBaseVersion(), request.getOperation(),
+                    request.getContent(), currentUser);
 
             return ResponseEntity.ok(ApiResponse.success("自动保存成功"));
         } catch (RuntimeException e) {
@@ -210,10 +244,10 @@ public class DocumentController {
             User currentUser = userService.getUserProfile(currentUserId);
 
             Pageable pageable = PageRequest.of(page, size, Sort.by("updatedAt").descending());
-            Page<Document> documents = documentService.advancedSearch_isOwner(
+            Page<DocumentSummary> documents = documentService.advancedSearch_isOwner(
                     title, content, startDate, endDate, currentUser, tagName, pageable);
 
-            List<Map<String,Object>> documents_res = documentsToMaps(documents);
+            List<Map<String,Object>> documents_res = summariesToMaps(documents);
 
             Map<String, Object> responseData = new HashMap<>();
             responseData.put("documents", documents_res);
@@ -243,10 +277,10 @@ public class DocumentController {
             User currentUser = userService.getUserProfile(currentUserId);
 
             Pageable pageable = PageRequest.of(page, size, Sort.by("updatedAt").descending());
-            Page<Document> documents = documentService.advancedSearch_isCollaborator(
+            Page<DocumentSummary> documents = documentService.advancedSearch_isCollaborator(
                     title, content, ownerUsername, startDate, endDate, currentUser, tagName, pageable);
 
-            List<Map<String,Object>> documents_res = documentsToMaps(documents);
+            List<Map<String,Object>> documents_res = summariesToMaps(documents);
 
             Map<String, Object> responseData = new HashMap<>();
             responseData.put("documents", documents_res);
@@ -260,6 +294,52 @@ public class DocumentController {
         }
     }
 
+    // 高级搜索（键集分页，cursor为上一页返回的nextCursor，第一页不传）
+    @GetMapping("/advanced-search-owner-seek")
+    public ResponseEntity<ApiResponse<Object>> seekAdvancedSearch_isOwner(
+            @RequestParam(required = false) String title,
+            @RequestParam(required = false) String content,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(required = false) String tagName,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            Long currentUserId = userService.getCurrentUserId();
+            User currentUser = userService.getUserProfile(currentUserId);
+
+            DocumentSummarySlice slice = documentService.seekAdvancedSearch_isOwner(
+                    title, content, startDate, endDate, currentUser, tagName, cursor, size);
+
+            return ResponseEntity.ok(ApiResponse.success("高级搜索成功", sliceToMap(slice)));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/advanced-search-collaborator-seek")
+    public ResponseEntity<ApiResponse<Object>> seekAdvancedSearch_isCollaborator(
+            @RequestParam(required = false) String title,
+            @RequestParam(required = false) String content,
+            @RequestParam(required = false) String ownerUsername,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(required = false) String tagName,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            Long currentUserId = userService.getCurrentUserId();
+            User currentUser = userService.getUserProfile(currentUserId);
+
+            DocumentSummarySlice slice = documentService.seekAdvancedSearch_isCollaborator(
+                    title, content, ownerUsername, startDate, endDate, currentUser, tagName, cursor, size);
+
+            return ResponseEntity.ok(ApiResponse.success("高级搜索成功", sliceToMap(slice)));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
     @GetMapping("/advanced-search-ai")
     public ResponseEntity<ApiResponse<Object>> advancedSearchAI(
             @RequestParam String content,
@@ -269,8 +349,8 @@ public class DocumentController {
             Long currentUserId = userService.getCurrentUserId();
 
             // 调用AI搜索服务
-            List<Document> documents = documentService.advancedSearch_AI(content, currentUserId);
-            List<Map<String, Object>> documents_res = documentsToMaps(documents);
+            List<DocumentSummary> documents = documentService.advancedSearch_AI(content, currentUserId, size);
+            List<Map<String, Object>> documents_res = summariesToMaps(documents);
 
             Map<String, Object> responseData = new HashMap<>();
             responseData.put("documents", documents_res);
@@ -302,7 +382,7 @@ public class DocumentController {
             for (DocumentClass docClass : documentClasses) {
                 Map<String, Object> classData = new HashMap<>();
                 classData.put("themeWords", docClass.getThemeWords());
-                classData.put("documents", documentsToMaps(docClass.getDocuments()));
+                classData.put("documents", summariesToMaps(documentService.summarizeIds(docClass.getDocumentIds())));
                 classesData.add(classData);
             }
 
@@ -372,12 +452,42 @@ public class DocumentController {
             // 构建响应数据
             Map<String, Object> documentInfo = documentToMap(document);
 
+            // 当前用户的自动保存草稿，草稿无法重建时告知客户端而不是当作没有草稿
+            DocumentDraft draft = draftService.getDraft(documentId, currentUserId);
+            documentInfo.put("autoSaveContent", draft != null ? draft.getContent() : null);
+            documentInfo.put("autoSaveTime", draft != null ? draft.getSavedAt() : null);
+            documentInfo.put("autoSaveRecoverable", draft == null || draft.isRecoverable());
+            if (draft != null && !draft.isRecoverable())
+                documentInfo.put("autoSaveError", "自动保存的草稿已无法恢复");
+
             return ResponseEntity.ok(ApiResponse.success("获取文档详情成功", documentInfo));
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         }
     }
 
+    // 获取文档的历史版本
+    @GetMapping("/{documentId}/versions/{version}")
+    public ResponseEntity<ApiResponse<Object>> getDocumentVersion(
+            @PathVariable Long documentId,
+            @PathVariable Long version) {
+        try {
+            Long currentUserId = userService.getCurrentUserId();
+            User currentUser = userService.getUserProfile(currentUserId);
+
+            String content = documentService.getDocumentVersion(documentId, version, currentUser);
+
+            Map<String, Object> responseData = new HashMap<>();
+            responseData.put("documentId", documentId);
+            responseData.put("version", version);
+            responseData.put("content", content);
+
+            return ResponseEntity.ok(ApiResponse.success("获取历史版本成功", responseData));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
     // 移除协作者
     @DeleteMapping("/{documentId}/collaborators/{userId}")
     public ResponseEntity<ApiResponse<Object>> removeCollaborator(
@@ -405,9 +515,9 @@ public class DocumentController {
             Long currentUserId = userService.getCurrentUserId();
             User currentUser = userService.getUserProfile(currentUserId);
 
-            List<Document> documents = documentService.getRootDocuments(currentUser);
+            List<DocumentSummary> documents = documentService.getRootDocuments(currentUser);
 
-            List<Map<String,Object>> documents_res = documentsToMaps(documents);
+            List<Map<String,Object>> documents_res = summariesToMaps(documents);
 
             Map<String, Object> responseData = new HashMap<>();
             responseData.put("documents", documents_res);
@@ -418,15 +528,31 @@ public class DocumentController {
         }
     }
 
+    @GetMapping("/root-documents-seek")
+    public ResponseEntity<ApiResponse<Object>> seekRootDocuments(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            Long currentUserId = userService.getCurrentUserId();
+            User currentUser = userService.getUserProfile(currentUserId);
+
+            DocumentSummarySlice slice = documentService.seekRootDocuments(currentUser, cursor, size);
+
+            return ResponseEntity.ok(ApiResponse.success("获取根目录文档成功", sliceToMap(slice)));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
     @GetMapping("/recycle-bin")
     public ResponseEntity<ApiResponse<Object>> getDeletedDocuments() {
         try {
             Long currentUserId = userService.getCurrentUserId();
             User currentUser = userService.getUserProfile(currentUserId);
 
-            List<Document> documents = documentService.getDeletedDocuments(currentUser);
+            List<DocumentSummary> documents = documentService.getDeletedDocuments(currentUser);
 
-            List<Map<String, Object>> documents_res = documentsToMaps(documents);
+            List<Map<String, Object>> documents_res = summariesToMaps(documents);
 
             Map<String, Object> responseData = new HashMap<>();
             responseData.put("documents", documents_res);
@@ -515,9 +641,15 @@ class UpdateDocumentRequest {
 }
 
 class AutoSaveRequest {
-    private String content;
+    private Long baseVersion; // 差异操作所基于的文档版本
+    private List<Object> operation; // 相对于baseVersion内容的差异操作
+    private String content; // 未提供差异操作时的完整内容
 
     // Getters and Setters
+    public Long getBaseVersion() { return baseVersion; }
+    public void setBaseVersion(Long baseVersion) { this.baseVersion = baseVersion; }
+    public List<Object> getOperation() { return operation; }
+    public void setOperation(List<Object> operation) { this.operation = operation; }
     public String getContent() { return content; }
     public void setContent(String content) { this.content = content; }
 }
@@ -1,9 +1,9 @@
 package com.example.multiuser_online_editing.controller.document_management;
 
 import com.example.multiuser_online_editing.controller.ApiResponse;
-import com.example.multiuser_online_editing.entity.document_management.Document;
 import com.example.multiuser_online_editing.entity.document_management.Folder;
 import com.example.multiuser_online_editing.entity.user_management.User;
+import com.example.multiuser_online_editing.repository.document_management.DocumentSummary;
 import com.example.multiuser_online_editing.service.document_management.FolderService;
 import com.example.multiuser_online_editing.service.user_management.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -160,9 +160,9 @@ public class FolderController {
             Long currentUserId = userService.getCurrentUserId();
             User currentUser = userService.getUserProfile(currentUserId);
 
-            List<Document> subDocuments = folderService.getSubDocuments(folderId, currentUser);
+            List<DocumentSummary> subDocuments = folderService.getSubDocuments(folderId, currentUser);
 
-            List<Map<String, Object>> subDocuments_res = DocumentController.documentsToMaps(subDocuments);
+            List<Map<String, Object>> subDocuments_res = DocumentController.summariesToMaps(subDocuments);
 
             Map<String, Object> responseData = new HashMap<>();
             responseData.put("subDocuments", subDocuments_res);
@@ -2,6 +2,7 @@ package com.example.multiuser_online_editing.controller.user_management;
 
 import com.example.multiuser_online_editing.controller.ApiResponse;
 import com.example.multiuser_online_editing.entity.user_management.User;
+import com.example.multiuser_online_editing.service.user_management.OperationLogService;
 import com.example.multiuser_online_editing.service.user_management.UserService;
 import com.example.multiuser_online_editing.util.JwtUtils;
 import com.example.multiuser_online_editing.service.user_management.UserDetailsImpl;
@@ -31,6 +32,9 @@ public class AuthController {
     @Autowired
     JwtUtils jwtUtils;
 
+    @Autowired
+    OperationLogService operationLogService;
+
     @PostMapping("/signin") // 登录请求
     public ResponseEntity<ApiResponse<Object>> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
         try {
@@ -50,7 +54,7 @@ public class AuthController {
             userInfo.put("role", userDetails.getAuthorities().iterator().next().getAuthority());
 
             Long userId = userService.getUserId(loginRequest.getUsername());
-            userService.logOperation(userId, "USER_LOGIN", "USER", userId, "User login successfully");
+            operationLogService.log(userId, "USER_LOGIN", "USER", userId, "User login successfully");
 
             return ResponseEntity.ok(ApiResponse.success("登录成功", userInfo));
         } catch (Exception e) {
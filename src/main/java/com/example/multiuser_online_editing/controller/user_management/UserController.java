@@ -4,6 +4,7 @@ import com.example.multiuser_online_editing.controller.ApiResponse;
 import com.example.multiuser_online_editing.entity.user_management.OperationLog;
 import com.example.multiuser_online_editing.entity.user_management.Role;
 import com.example.multiuser_online_editing.entity.user_management.User;
+import com.example.multiuser_online_editing.service.user_management.OperationLogService;
 import com.example.multiuser_online_editing.service.user_management.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -25,6 +26,9 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private OperationLogService operationLogService;
+
     @PutMapping("/profile")
     public ResponseEntity<ApiResponse<Object>> updateProfile(@RequestBody UpdateProfileRequest updateRequest) {
         try {
@@ -242,6 +246,13 @@ public class UserController {
         }
     }
 
+    // 操作日志队列的运行状况（队列深度、丢弃数等）
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/logs/metrics")
+    public ResponseEntity<ApiResponse<Object>> getOperationLogMetrics() {
+        return ResponseEntity.ok(ApiResponse.success("获取操作日志队列状态成功", operationLogService.getMetrics()));
+    }
+
     private Long getCurrentUserId() {
         return userService.getCurrentUserId();
     }
@@ -8,12 +8,19 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.DynamicUpdate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "documents")
+@Table(name = "documents", indexes = {
+        // 与按 (updatedAt, id) 倒序的键集分页对应
+        @Index(name = "idx_documents_owner_updated", columnList = "owner_id, updated_at, id"),
+        @Index(name = "idx_documents_owner_folder_updated", columnList = "owner_id, folder_id, updated_at, id")
+})
+@DynamicUpdate // 只更新发生变化的列，避免覆盖由文档缓冲区写回的内容
 public class Document {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -23,10 +30,20 @@ public class Document {
     @Size(max = 200)
     private String title;
 
+    // 内容和版本号由DocumentBufferService写回数据库，JPA只在新建文档时写入
     @Lob
-    @Column(columnDefinition = "LONGTEXT")
+    @Column(columnDefinition = "LONGTEXT", updatable = false)
     private String content;
 
+    // 列表中展示的纯文本摘要，随内容一起由DocumentBufferService写回
+    @Column(length = 200, updatable = false)
+    private String snippet;
+
+    // 正文去掉HTML后的纯文本，供搜索、聚类使用，随内容一起由DocumentBufferService写回
+    @Lob
+    @Column(name = "plain_text", columnDefinition = "LONGTEXT", updatable = false)
+    private String plainText;
+
     @Enumerated(EnumType.STRING)
     @Column(length = 20)
     private DocumentStatus status = DocumentStatus.EXISTS;
@@ -41,6 +58,7 @@ public class Document {
     private User owner;
 
     @ManyToMany
+    @BatchSize(size = 50) // 列表中访问多篇文档的协作者时按批加载，避免每篇文档一次查询
     @JoinTable(
             name = "document_collaborators",
             joinColumns = @JoinColumn(name = "document_id"),
@@ -50,6 +68,7 @@ public class Document {
     private List<User> collaborators = new ArrayList<>();
 
     @ManyToMany
+    @BatchSize(size = 50)
     @JoinTable(
             name = "document_tags",
             joinColumns = @JoinColumn(name = "document_id"),
@@ -69,12 +88,9 @@ public class Document {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    @Column(updatable = false)
     private Long version = 1L;
 
-    // 自动保存相关字段
-    private String autoSaveContent; // 临时草稿
-    private LocalDateTime autoSaveTime; // 自动保存临时草稿的时间
-
     @OneToMany(mappedBy = "document", fetch = FetchType.LAZY)
     private List<CollaborationSession> collaborationSessions = new ArrayList<>();
 
@@ -107,6 +123,10 @@ public class Document {
     public void setTitle(String title) { this.title = title; }
     public String getContent() { return content; }
     public void setContent(String content) { this.content = content; }
+    public String getSnippet() { return snippet; }
+    public void setSnippet(String snippet) { this.snippet = snippet; }
+    public String getPlainText() { return plainText; }
+    public void setPlainText(String plainText) { this.plainText = plainText; }
     public DocumentStatus getStatus() { return status; }
     public void setStatus(DocumentStatus status) { this.status = status; }
     public User getOwner() { return owner; }
@@ -123,10 +143,6 @@ public class Document {
     public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
     public Long getVersion() { return version; }
     public void setVersion(Long version) { this.version = version; }
-    public String getAutoSaveContent() { return autoSaveContent; }
-    public void setAutoSaveContent(String autoSaveContent) { this.autoSaveContent = autoSaveContent; }
-    public LocalDateTime getAutoSaveTime() { return autoSaveTime; }
-    public void setAutoSaveTime(LocalDateTime autoSaveTime) { this.autoSaveTime = autoSaveTime; }
     public DocumentType getType() { return type; }
     public void setType(DocumentType type) { this.type = type; }
 }
\ No newline at end of file
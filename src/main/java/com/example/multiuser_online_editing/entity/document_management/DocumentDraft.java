@@ -0,0 +1,69 @@
+package com.example.multiuser_online_editing.entity.document_management;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "document_drafts",
+        indexes = @Index(name = "idx_document_drafts_document_user",
+                columnList = "document_id, user_id", unique = true))
+public class DocumentDraft { // 用户对文档的自动保存草稿（相对于某个版本的差异），每个用户每个文档一条，由DraftService批量写入
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "document_id", nullable = false)
+    private Long documentId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "base_version")
+    private Long baseVersion; // 草稿所基于的文档版本
+
+    @Lob
+    @Column(columnDefinition = "LONGTEXT")
+    private String operation; // 从baseVersion的内容变为草稿内容的TextOperation（JSON）
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash; // 草稿的SHA-256，用于跳过内容相同的自动保存
+
+    @Transient
+    private String content; // 重建后的草稿内容，不保存
+
+    @Transient
+    private boolean recoverable = true; // 草稿已损坏或基准版本的历史已被清理时为false，不保存
+
+    @Column(name = "saved_at")
+    private LocalDateTime savedAt;
+
+    public DocumentDraft() {}
+
+    public DocumentDraft(Long documentId, Long userId, Long baseVersion, String operation, LocalDateTime savedAt) {
+        this.documentId = documentId;
+        this.userId = userId;
+        this.baseVersion = baseVersion;
+        this.operation = operation;
+        this.savedAt = savedAt;
+    }
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public Long getDocumentId() { return documentId; }
+    public void setDocumentId(Long documentId) { this.documentId = documentId; }
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+    public Long getBaseVersion() { return baseVersion; }
+    public void setBaseVersion(Long baseVersion) { this.baseVersion = baseVersion; }
+    public String getOperation() { return operation; }
+    public void setOperation(String operation) { this.operation = operation; }
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+    public String getContent() { return content; }
+    public void setContent(String content) { this.content = content; }
+    public boolean isRecoverable() { return recoverable; }
+    public void setRecoverable(boolean recoverable) { this.recoverable = recoverable; }
+    public LocalDateTime getSavedAt() { return savedAt; }
+    public void setSavedAt(LocalDateTime savedAt) { this.savedAt = savedAt; }
+}
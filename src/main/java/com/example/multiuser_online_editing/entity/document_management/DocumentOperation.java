@@ -0,0 +1,44 @@
+package com.example.multiuser_online_editing.entity.document_management;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "document_operations",
+        indexes = @Index(name = "idx_document_operations_document_version",
+                columnList = "document_id, version", unique = true))
+public class DocumentOperation { // 文档操作日志（只追加），由DocumentBufferService以JDBC批量写入
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "document_id", nullable = false)
+    private Long documentId;
+
+    @Column(nullable = false)
+    private Long version; // 应用该操作后文档的版本号
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Lob
+    @Column(columnDefinition = "LONGTEXT", nullable = false)
+    private String operation; // TextOperation的JSON形式，例如 [5,"abc",-3]
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public Long getDocumentId() { return documentId; }
+    public void setDocumentId(Long documentId) { this.documentId = documentId; }
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+    public String getOperation() { return operation; }
+    public void setOperation(String operation) { this.operation = operation; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
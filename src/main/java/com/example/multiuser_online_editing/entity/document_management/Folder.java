@@ -4,12 +4,14 @@ import com.example.multiuser_online_editing.entity.user_management.User;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.BatchSize;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
 @Table(name = "folders")
+@BatchSize(size = 50) // 文档的文件夹和文件夹路径上的父文件夹按批加载
 public class Folder {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,33 @@
+package com.example.multiuser_online_editing.entity.document_management;
+
+import jakarta.persistence.*;
+
+@Entity
+@Table(name = "search_documents")
+public class SearchDocument { // 已建立索引的文档：文档长度（词数）和建立索引时的版本号、标题，由SearchIndexService写入
+    @Id
+    @Column(name = "document_id")
+    private Long documentId;
+
+    @Column(nullable = false)
+    private Integer length;
+
+    @Column(name = "indexed_version", nullable = false)
+    private Long indexedVersion;
+
+    // 只修改标题时版本号不变，需要同时比较标题才能判断索引是否过期；标题也决定了正文在索引文本中的起始位置
+    @Column(name = "indexed_title", length = 200)
+    private String indexedTitle;
+
+    public SearchDocument() {}
+
+    // Getters and Setters
+    public Long getDocumentId() { return documentId; }
+    public void setDocumentId(Long documentId) { this.documentId = documentId; }
+    public Integer getLength() { return length; }
+    public void setLength(Integer length) { this.length = length; }
+    public Long getIndexedVersion() { return indexedVersion; }
+    public void setIndexedVersion(Long indexedVersion) { this.indexedVersion = indexedVersion; }
+    public String getIndexedTitle() { return indexedTitle; }
+    public void setIndexedTitle(String indexedTitle) { this.indexedTitle = indexedTitle; }
+}
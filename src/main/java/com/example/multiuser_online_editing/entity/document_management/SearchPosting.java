@@ -0,0 +1,41 @@
+package com.example.multiuser_online_editing.entity.document_management;
+
+import jakarta.persistence.*;
+
+@Entity
+@Table(name = "search_postings",
+        indexes = {
+                @Index(name = "idx_search_postings_term_document", columnList = "term, document_id", unique = true),
+                @Index(name = "idx_search_postings_document", columnList = "document_id")
+        })
+public class SearchPosting { // 倒排索引中的一项：某个词在某篇文档中出现的次数和位置，由SearchIndexService写入
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 64)
+    private String term;
+
+    @Column(name = "document_id", nullable = false)
+    private Long documentId;
+
+    @Column(nullable = false)
+    private Integer frequency; // 词频
+
+    @Column(name = "position_deltas", columnDefinition = "BLOB")
+    private byte[] positionDeltas; // 词在文档纯文本中的起始字符位置，差值加变长整数编码（见PositionCodec）
+
+    public SearchPosting() {}
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public String getTerm() { return term; }
+    public void setTerm(String term) { this.term = term; }
+    public Long getDocumentId() { return documentId; }
+    public void setDocumentId(Long documentId) { this.documentId = documentId; }
+    public Integer getFrequency() { return frequency; }
+    public void setFrequency(Integer frequency) { this.frequency = frequency; }
+    public byte[] getPositionDeltas() { return positionDeltas; }
+    public void setPositionDeltas(byte[] positionDeltas) { this.positionDeltas = positionDeltas; }
+}
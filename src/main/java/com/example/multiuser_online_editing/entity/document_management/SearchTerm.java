@@ -0,0 +1,22 @@
+package com.example.multiuser_online_editing.entity.document_management;
+
+import jakarta.persistence.*;
+
+@Entity
+@Table(name = "search_terms")
+public class SearchTerm { // 倒排索引中的词及包含该词的文档数（整个索引，用于计算IDF），由SearchIndexService随倒排项一起维护
+    @Id
+    @Column(length = 64)
+    private String term;
+
+    @Column(name = "document_frequency", nullable = false)
+    private Integer documentFrequency;
+
+    public SearchTerm() {}
+
+    // Getters and Setters
+    public String getTerm() { return term; }
+    public void setTerm(String term) { this.term = term; }
+    public Integer getDocumentFrequency() { return documentFrequency; }
+    public void setDocumentFrequency(Integer documentFrequency) { this.documentFrequency = documentFrequency; }
+}
@@ -0,0 +1,22 @@
+package com.example.multiuser_online_editing.repository.document_management;
+
+import com.example.multiuser_online_editing.entity.document_management.DocumentOperation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface DocumentOperationRepository extends JpaRepository<DocumentOperation, Long> {
+
+    // 按版本顺序获取版本区间内的操作
+    List<DocumentOperation> findByDocumentIdAndVersionBetweenOrderByVersionAsc(Long documentId, Long fromVersion, Long toVersion);
+
+    // 删除文档的所有操作日志
+    @Modifying
+    @Query("DELETE FROM DocumentOperation o WHERE o.documentId = :documentId")
+    void deleteByDocumentId(@Param("documentId") Long documentId);
+}
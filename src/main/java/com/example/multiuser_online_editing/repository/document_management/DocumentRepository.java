@@ -6,12 +6,14 @@ import com.example.multiuser_online_editing.entity.document_management.Folder;
 import com.example.multiuser_online_editing.entity.user_management.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,44 +22,77 @@ public interface DocumentRepository extends JpaRepository<Document, Long> {
 
     Optional<Document> findByOwnerAndId(User owner, Long id);
 
+    // 返回文档实体的列表查询同时取出所有者和文件夹；协作者和标签由实体上的@BatchSize按批加载
     // 根据所有者查找文档
+    @EntityGraph(attributePaths = {"owner", "folder"})
     Page<Document> findByOwnerAndStatusNotOrderByUpdatedAtDesc(User owner, DocumentStatus status, Pageable pageable);
+    @EntityGraph(attributePaths = {"owner", "folder"})
     List<Document> findByOwnerAndStatusNot(User owner, DocumentStatus status);
 
     // 根据所有者查找根目录下的文档（parent为null）
+    @EntityGraph(attributePaths = {"owner", "folder"})
     Page<Document> findByOwnerAndFolderIsNullAndStatusNotOrderByUpdatedAtDesc(User owner, DocumentStatus status, Pageable pageable);
+    @EntityGraph(attributePaths = {"owner", "folder"})
     List<Document> findByOwnerAndFolderIsNullAndStatusNot(User owner, DocumentStatus status);
 
-    // 高级搜索
-    @Query("SELECT d FROM Document d LEFT JOIN d.tags t WHERE " +
+    // 文档摘要投影（列表、搜索结果使用），不查询正文
+    String SUMMARY_SELECT = "SELECT new com.example.multiuser_online_editing.repository.document_management.DocumentSummary(" +
+            "d.id, d.title, d.snippet, o.username, d.status, d.type, d.createdAt, d.updatedAt, d.version, " +
+            "f.id, SIZE(d.collaborators)) FROM Document d JOIN d.owner o LEFT JOIN d.folder f ";
+
+    // 标题、正文条件：titleMatch/contentMatch使用ngram全文索引（见FullTextIndexInitializer），
+    // title/content用于比ngram短、无法使用全文索引的搜索词，两者最多只有一个不为null
+    String TEXT_CONDITION =
             "(:title IS NULL OR d.title LIKE %:title%) AND " +
-            "(:content IS NULL OR d.content LIKE %:content%) AND " +
+            "(:titleMatch IS NULL OR function('match_against', d.title, :titleMatch) > 0) AND " +
+            "(:content IS NULL OR d.plainText LIKE %:content%) AND " +
+            "(:contentMatch IS NULL OR function('match_against', d.plainText, :contentMatch) > 0) AND ";
+
+    // 高级搜索（标签条件使用子查询，避免一篇文档因多个标签重复出现）
+    @Query(value = SUMMARY_SELECT + "WHERE " +
+            TEXT_CONDITION +
             "(:startDate IS NULL OR d.createdAt >= :startDate) AND " +
             "(:endDate IS NULL OR d.createdAt <= :endDate) AND " +
-            "(:tagName IS NULL OR t.name = :tagName) AND " +
+            "(:tagName IS NULL OR EXISTS (SELECT t FROM d.tags t WHERE t.name = :tagName)) AND " +
             "d.status != 'DELETED' AND " +
-            "(d.owner = :currentUser) " +
-            "ORDER BY d.updatedAt DESC")
-    Page<Document> advancedSearch_isOwner(@Param("title") String title,
+            "(d.owner = :currentUser)",
+            countQuery = "SELECT COUNT(d) FROM Document d WHERE " +
+            TEXT_CONDITION +
+            "(:startDate IS NULL OR d.createdAt >= :startDate) AND " +
+            "(:endDate IS NULL OR d.createdAt <= :endDate) AND " +
+            "(:tagName IS NULL OR EXISTS (SELECT t FROM d.tags t WHERE t.name = :tagName)) AND " +
+            "d.status != 'DELETED' AND " +
+            "(d.owner = :currentUser)")
+    Page<DocumentSummary> advancedSearch_isOwner(@Param("title") String title,
                                   @Param("content") String content,
+                                  @Param("titleMatch") String titleMatch,
+                                  @Param("contentMatch") String contentMatch,
                                   @Param("startDate") LocalDateTime startDate,
                                   @Param("endDate") LocalDateTime endDate,
                                   @Param("currentUser") User currentUser,
                                   @Param("tagName") String tagName,
                                   Pageable pageable);
 
-    @Query("SELECT d FROM Document d LEFT JOIN d.tags t WHERE " +
-            "(:title IS NULL OR d.title LIKE %:title%) AND " +
-            "(:content IS NULL OR d.content LIKE %:content%) AND " +
+    @Query(value = SUMMARY_SELECT + "WHERE " +
+            TEXT_CONDITION +
             "(:owner IS NULL OR d.owner = :owner) AND " +
             "(:startDate IS NULL OR d.createdAt >= :startDate) AND " +
             "(:endDate IS NULL OR d.createdAt <= :endDate) AND " +
-            "(:tagName IS NULL OR t.name = :tagName) AND " +
+            "(:tagName IS NULL OR EXISTS (SELECT t FROM d.tags t WHERE t.name = :tagName)) AND " +
             "d.status != 'DELETED' AND " +
-            "(:currentUser MEMBER OF d.collaborators)" +
-            "ORDER BY d.updatedAt DESC")
-    Page<Document> advancedSearch_isCollaborator(@Param("title") String title,
+            "(:currentUser MEMBER OF d.collaborators)",
+            countQuery = "SELECT COUNT(d) FROM Document d WHERE " +
+            TEXT_CONDITION +
+            "(:owner IS NULL OR d.owner = :owner) AND " +
+            "(:startDate IS NULL OR d.createdAt >= :startDate) AND " +
+            "(:endDate IS NULL OR d.createdAt <= :endDate) AND " +
+            "(:tagName IS NULL OR EXISTS (SELECT t FROM d.tags t WHERE t.name = :tagName)) AND " +
+            "d.status != 'DELETED' AND " +
+            "(:currentUser MEMBER OF d.collaborators)")
+    Page<DocumentSummary> advancedSearch_isCollaborator(@Param("title") String title,
                                   @Param("content") String content,
+                                  @Param("titleMatch") String titleMatch,
+                                  @Param("contentMatch") String contentMatch,
                                   @Param("owner") User owner,
                                   @Param("startDate") LocalDateTime startDate,
                                   @Param("endDate") LocalDateTime endDate,
@@ -65,18 +100,119 @@ public interface DocumentRepository extends JpaRepository<Document, Long> {
                                   @Param("tagName") String tagName,
                                   Pageable pageable);
 
+    // 键集（seek）分页：从游标 (updatedAt, id) 之后继续按倒序取，不做计数，翻到多深都只扫描一页的索引范围
+    String SEEK_CONDITION = "(d.updatedAt < :cursorUpdatedAt OR (d.updatedAt = :cursorUpdatedAt AND d.id < :cursorId)) ";
+    String SEEK_ORDER = "ORDER BY d.updatedAt DESC, d.id DESC";
+
+    @Query(SUMMARY_SELECT + "WHERE " +
+            TEXT_CONDITION +
+            "(:startDate IS NULL OR d.createdAt >= :startDate) AND " +
+            "(:endDate IS NULL OR d.createdAt <= :endDate) AND " +
+            "(:tagName IS NULL OR EXISTS (SELECT t FROM d.tags t WHERE t.name = :tagName)) AND " +
+            "d.status != 'DELETED' AND " +
+            "d.owner = :currentUser AND " + SEEK_CONDITION + SEEK_ORDER)
+    List<DocumentSummary> seekAdvancedSearch_isOwner(@Param("title") String title,
+                                  @Param("content") String content,
+                                  @Param("titleMatch") String titleMatch,
+                                  @Param("contentMatch") String contentMatch,
+                                  @Param("startDate") LocalDateTime startDate,
+                                  @Param("endDate") LocalDateTime endDate,
+                                  @Param("currentUser") User currentUser,
+                                  @Param("tagName") String tagName,
+                                  @Param("cursorUpdatedAt") LocalDateTime cursorUpdatedAt,
+                                  @Param("cursorId") Long cursorId,
+                                  Pageable limit);
+
+    @Query(SUMMARY_SELECT + "WHERE " +
+            TEXT_CONDITION +
+            "(:owner IS NULL OR d.owner = :owner) AND " +
+            "(:startDate IS NULL OR d.createdAt >= :startDate) AND " +
+            "(:endDate IS NULL OR d.createdAt <= :endDate) AND " +
+            "(:tagName IS NULL OR EXISTS (SELECT t FROM d.tags t WHERE t.name = :tagName)) AND " +
+            "d.status != 'DELETED' AND " +
+            "(:currentUser MEMBER OF d.collaborators) AND " + SEEK_CONDITION + SEEK_ORDER)
+    List<DocumentSummary> seekAdvancedSearch_isCollaborator(@Param("title") String title,
+                                  @Param("content") String content,
+                                  @Param("titleMatch") String titleMatch,
+                                  @Param("contentMatch") String contentMatch,
+                                  @Param("owner") User owner,
+                                  @Param("startDate") LocalDateTime startDate,
+                                  @Param("endDate") LocalDateTime endDate,
+                                  @Param("currentUser") User currentUser,
+                                  @Param("tagName") String tagName,
+                                  @Param("cursorUpdatedAt") LocalDateTime cursorUpdatedAt,
+                                  @Param("cursorId") Long cursorId,
+                                  Pageable limit);
+
+    @Query(SUMMARY_SELECT + "WHERE d.owner = :owner AND d.folder IS NULL AND d.status != 'DELETED' AND " +
+            SEEK_CONDITION + SEEK_ORDER)
+    List<DocumentSummary> seekRootSummaries(@Param("owner") User owner,
+                                            @Param("cursorUpdatedAt") LocalDateTime cursorUpdatedAt,
+                                            @Param("cursorId") Long cursorId,
+                                            Pageable limit);
+
+    // 根目录下未删除的文档摘要
+    @Query(SUMMARY_SELECT + "WHERE d.owner = :owner AND d.folder IS NULL AND d.status != 'DELETED' " +
+            "ORDER BY d.updatedAt DESC")
+    List<DocumentSummary> findRootSummaries(@Param("owner") User owner);
+
+    // 文件夹下未删除的文档摘要
+    @Query(SUMMARY_SELECT + "WHERE d.owner = :owner AND d.folder = :folder AND d.status != 'DELETED' " +
+            "ORDER BY d.updatedAt DESC")
+    List<DocumentSummary> findFolderSummaries(@Param("owner") User owner, @Param("folder") Folder folder);
+
+    // 回收站中的文档摘要
+    @Query(SUMMARY_SELECT + "WHERE d.owner = :owner AND d.status = 'DELETED' ORDER BY d.updatedAt DESC")
+    List<DocumentSummary> findDeletedSummaries(@Param("owner") User owner);
+
+    @Query(SUMMARY_SELECT + "WHERE d.id IN :ids")
+    List<DocumentSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // 批量查询文档的标签名，每行为 [文档ID, 标签名]
+    @Query("SELECT d.id, t.name FROM Document d JOIN d.tags t WHERE d.id IN :ids")
+    List<Object[]> findTagNamesByDocumentIds(@Param("ids") Collection<Long> ids);
+
+    @EntityGraph(attributePaths = {"owner", "folder"})
     List<Document> findByOwnerAndFolderAndStatusNot(User owner, Folder folder, DocumentStatus status);
 
+    @EntityGraph(attributePaths = {"owner", "folder"})
     List<Document> findByOwnerAndStatus(User owner, DocumentStatus status);
 
     // 根据文档的ID搜索文档
     Optional<Document> findByIdAndStatusNot(Long id, DocumentStatus status);
 
-    // 搜索某个用户可以访问的（作为所有者或协作者的文档）
-    @Query("SELECT d FROM Document d WHERE " +
+    // 文档所有者和协作者的用户ID
+    @Query("SELECT d.owner.id FROM Document d WHERE d.id = :documentId " +
+            "UNION SELECT c.id FROM Document d JOIN d.collaborators c WHERE d.id = :documentId")
+    List<Long> findMemberIds(@Param("documentId") Long documentId);
+
+    // 用户可以访问的所有文档，每行为 [文档ID, 版本号, 标题]（聚类据此判断词频向量缓存是否有效，不加载正文）
+    @Query("SELECT d.id, d.version, d.title FROM Document d WHERE " +
             "d.status != 'DELETED' AND " +
             "(d.owner.id = :userId OR :userId IN (SELECT c.id FROM d.collaborators c)) " +
             "ORDER BY d.updatedAt DESC")
-    List<Document> findAccessibleDocuments(@Param("userId") Long userId);
+    List<Object[]> findAccessibleVersions(@Param("userId") Long userId);
+
+    // 文档的纯文本，每行为 [文档ID, 纯文本, 正文]，正文只在纯文本列尚未补齐时返回（聚类为缓存未命中的文档加载）
+    @Query("SELECT d.id, d.plainText, CASE WHEN d.plainText IS NULL THEN d.content END FROM Document d WHERE d.id IN :ids")
+    List<Object[]> findPlainTextsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // 多篇文档的所有者和协作者的用户ID（去重）
+    @Query("SELECT d.owner.id FROM Document d WHERE d.id IN :ids " +
+            "UNION SELECT c.id FROM Document d JOIN d.collaborators c WHERE d.id IN :ids")
+    List<Long> findMemberIdsIn(@Param("ids") Collection<Long> ids);
+
+    // 用户可以访问的最近更新的文档ID
+    @Query("SELECT d.id FROM Document d WHERE " +
+            "d.status != 'DELETED' AND " +
+            "(d.owner.id = :userId OR :userId IN (SELECT c.id FROM d.collaborators c)) " +
+            "ORDER BY d.updatedAt DESC, d.id DESC")
+    List<Long> findRecentAccessibleIds(@Param("userId") Long userId, Pageable limit);
+
+    // 判断用户是否可以访问文档（作为所有者或协作者，且文档未被删除）
+    @Query("SELECT CASE WHEN COUNT(d) > 0 THEN true ELSE false END FROM Document d WHERE " +
+            "d.id = :documentId AND d.status != 'DELETED' AND " +
+            "(d.owner.id = :userId OR :userId IN (SELECT c.id FROM d.collaborators c))")
+    boolean isAccessible(@Param("documentId") Long documentId, @Param("userId") Long userId);
 
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package com.example.multiuser_online_editing.repository.document_management;
+
+import com.example.multiuser_online_editing.entity.document_management.DocumentSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface DocumentSnapshotRepository extends JpaRepository<DocumentSnapshot, Long> {
+
+    // 获取不晚于指定版本的最近一个快照
+    Optional<DocumentSnapshot> findTopByDocumentIdAndVersionLessThanEqualOrderByVersionDesc(Long documentId, Long version);
+
+    // 获取文档最新的快照版本号，没有快照时返回null
+    @Query("SELECT MAX(s.version) FROM DocumentSnapshot s WHERE s.documentId = :documentId")
+    Long findLatestVersion(@Param("documentId") Long documentId);
+
+    // 删除文档的所有快照
+    @Modifying
+    @Query("DELETE FROM DocumentSnapshot s WHERE s.documentId = :documentId")
+    void deleteByDocumentId(@Param("documentId") Long documentId);
+}
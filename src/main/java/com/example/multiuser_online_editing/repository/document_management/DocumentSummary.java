@@ -0,0 +1,63 @@
+package com.example.multiuser_online_editing.repository.document_management;
+
+import com.example.multiuser_online_editing.entity.document_management.DocumentStatus;
+import com.example.multiuser_online_editing.entity.document_management.DocumentType;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 文档列表使用的摘要投影，由JPQL构造表达式直接查询得到，不加载文档正文
+ * 标签和文件夹路径由DocumentService批量补充，AI搜索结果的高亮片段由SearchIndexService生成
+ */
+public class DocumentSummary {
+    private final Long id;
+    private final String title;
+    private final String snippet;
+    private final String owner;
+    private final DocumentStatus status;
+    private final DocumentType type;
+    private final LocalDateTime createdAt;
+    private final LocalDateTime updatedAt;
+    private final Long version;
+    private final Long folderId;
+    private final int collaboratorsCount;
+    private List<String> tags = new ArrayList<>();
+    private String folder;
+    private List<SearchSnippet> highlights; // 只有AI搜索的结果有该字段
+
+    public DocumentSummary(Long id, String title, String snippet, String owner, DocumentStatus status,
+                           DocumentType type, LocalDateTime createdAt, LocalDateTime updatedAt, Long version,
+                           Long folderId, Integer collaboratorsCount) {
+        this.id = id;
+        this.title = title;
+        this.snippet = snippet;
+        this.owner = owner;
+        this.status = status;
+        this.type = type;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.version = version;
+        this.folderId = folderId;
+        this.collaboratorsCount = collaboratorsCount == null ? 0 : collaboratorsCount;
+    }
+
+    public Long getId() { return id; }
+    public String getTitle() { return title; }
+    public String getSnippet() { return snippet; }
+    public String getOwner() { return owner; }
+    public DocumentStatus getStatus() { return status; }
+    public DocumentType getType() { return type; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public Long getVersion() { return version; }
+    public Long getFolderId() { return folderId; }
+    public int getCollaboratorsCount() { return collaboratorsCount; }
+    public List<String> getTags() { return tags; }
+    public void setTags(List<String> tags) { this.tags = tags; }
+    public String getFolder() { return folder; }
+    public void setFolder(String folder) { this.folder = folder; }
+    public List<SearchSnippet> getHighlights() { return highlights; }
+    public void setHighlights(List<SearchSnippet> highlights) { this.highlights = highlights; }
+}
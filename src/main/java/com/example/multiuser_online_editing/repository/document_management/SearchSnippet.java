@@ -0,0 +1,26 @@
+package com.example.multiuser_online_editing.repository.document_management;
+
+import java.util.List;
+
+/**
+ * AI搜索结果中的一段正文片段，由倒排索引中的词位置定位
+ * highlights中每一项为[起始, 结束)，是匹配搜索词的字符位置（相对于text）
+ */
+public class SearchSnippet {
+    private final String text;
+    private final int offset; // 片段在正文纯文本中的起始位置，大于0时前端可以在片段前加省略号
+    private final boolean truncated; // 片段之后还有正文
+    private final List<int[]> highlights;
+
+    public SearchSnippet(String text, int offset, boolean truncated, List<int[]> highlights) {
+        this.text = text;
+        this.offset = offset;
+        this.truncated = truncated;
+        this.highlights = highlights;
+    }
+
+    public String getText() { return text; }
+    public int getOffset() { return offset; }
+    public boolean isTruncated() { return truncated; }
+    public List<int[]> getHighlights() { return highlights; }
+}
@@ -0,0 +1,23 @@
+package com.example.multiuser_online_editing.service.collaboration;
+
+/**
+ * 已被服务端接受的操作，version为应用该操作后文档的版本号
+ */
+public class AppliedOperation {
+    private final long version;
+    private final TextOperation operation;
+    private final Long userId;
+    private final String clientId; // 提交者客户端的标识，客户端据此识别对自己操作的确认
+
+    public AppliedOperation(long version, TextOperation operation, Long userId, String clientId) {
+        this.version = version;
+        this.operation = operation;
+        this.userId = userId;
+        this.clientId = clientId;
+    }
+
+    public long getVersion() { return version; }
+    public TextOperation getOperation() { return operation; }
+    public Long getUserId() { return userId; }
+    public String getClientId() { return clientId; }
+}
@@ -1,23 +1,26 @@
 package com.example.multiuser_online_editing.service.collaboration;
 
-import com.example.multiuser_online_editing.entity.collaboration.CollaborationSession;
 import com.example.multiuser_online_editing.entity.document_management.Document;
 import com.example.multiuser_online_editing.entity.user_management.User;
 import com.example.multiuser_online_editing.repository.collaboration.CollaborationSessionRepository;
 import com.example.multiuser_online_editing.repository.document_management.DocumentRepository;
 import com.example.multiuser_online_editing.repository.user_management.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 @Service
-@Transactional
 public class CollaborationService {
 
     @Autowired
@@ -32,80 +35,121 @@ public class CollaborationService {
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
 
+    @Autowired
+    private DocumentBufferService documentBufferService;
+
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+
+    @Value("${app.collaboration.presence.timeout-ms}")
+    private long presenceTimeoutMs; // 超过该时间没有心跳的会话视为已离线
+
     /**
-     * 用户加入文档协作
+     * 用户加入文档协作（只登记到内存中的在线状态，不写数据库）
+     * 权限用一条查询检查，不依赖延迟加载，心跳中重新加入时不经过事务代理也可以调用
      */
+    @Transactional(readOnly = true)
     public void joinDocument(Long documentId, Long userId, String sessionId) {
-        Document document = documentRepository.findById(documentId)
-                .orElseThrow(() -> new RuntimeException("文档不存在"));
+        if (!documentRepository.isAccessible(documentId, userId)) {
+            throw new RuntimeException("无权访问此文档");
+        }
 
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("用户不存在"));
 
-        // 检查权限：用户必须是文档所有者或协作者
-        boolean hasPermission = document.getOwner().getId().equals(userId) ||
-                document.getCollaborators().stream().anyMatch(c -> c.getId().equals(userId));
-
-        if (!hasPermission) {
-            throw new RuntimeException("无权访问此文档");
-        }
-
-        // 创建或更新协作会话
-        Optional<CollaborationSession> existingSession =
-                collaborationSessionRepository.findByUserIdAndDocumentId(userId, documentId);
-
-        CollaborationSession session;
-        if (existingSession.isPresent()) {
-            session = existingSession.get();
-            session.setSessionId(sessionId);
-            session.setLastActivity(LocalDateTime.now());
-        } else {
-            session = new CollaborationSession(document, user, sessionId);
+        PresenceUser presenceUser = new PresenceUser(user);
+        if (presenceRegistry.join(documentId, presenceUser, sessionId)) {
+            // 广播用户加入通知
+            broadcastPresence(documentId, "JOINED", presenceUser);
         }
+    }
 
-        collaborationSessionRepository.save(session);
+    /**
+     * 用户离开文档协作，sessionId为空时离开该用户在文档中的所有会话
+     */
+    public void leaveDocument(Long documentId, Long userId, String sessionId) {
+        handleDepartures(presenceRegistry.leave(documentId, userId, sessionId));
+    }
 
-        // 广播用户加入通知
-        messagingTemplate.convertAndSend(
-                "/topic/document/" + documentId + "/users",
-                getOnlineUsers(documentId)
-        );
+    /**
+     * 客户端心跳，会话已过期（例如服务重启后）时重新加入；只更新内存中的在线状态，不开启事务
+     */
+    public void heartbeat(Long documentId, Long userId, String sessionId, String wsSessionId) {
+        if (!presenceRegistry.touch(documentId, sessionId, wsSessionId)) {
+            joinDocument(documentId, userId, sessionId);
+            presenceRegistry.touch(documentId, sessionId, wsSessionId);
+        }
     }
 
     /**
-     * 用户离开文档协作
+     * WebSocket连接断开时，移除绑定在该连接上的在线会话
      */
-    public void leaveDocument(Long documentId, Long userId) {
-        Optional<CollaborationSession> session =
-                collaborationSessionRepository.findByUserIdAndDocumentId(userId, documentId);
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        handleDepartures(presenceRegistry.disconnect(event.getSessionId()));
+    }
 
-        if (session.isPresent()) {
-            collaborationSessionRepository.delete(session.get());
+    /**
+     * 定时移除长时间没有心跳的在线会话
+     */
+    @Scheduled(fixedDelayString = "${app.collaboration.presence.sweep-interval-ms}")
+    public void expireStalePresence() {
+        handleDepartures(presenceRegistry.expire(System.currentTimeMillis() - presenceTimeoutMs));
+    }
 
-            // 广播用户离开通知
-            messagingTemplate.convertAndSend(
-                    "/topic/document/" + documentId + "/users",
-                    getOnlineUsers(documentId)
-            );
-        }
+    /**
+     * 启动时清理旧版本遗留在数据库中的协作会话记录（在线状态已改为保存在内存中）
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void purgeStaleSessions() {
+        collaborationSessionRepository.deleteByLastActivityBefore(LocalDateTime.now());
     }
 
     /**
-     * 检查文档是否存在
+     * 检查用户是否有权访问文档（文档所有者或协作者）
      */
-    public void checkDocumentExistence(Long documentId) {
-        // 更新文档内容
-        documentRepository.findById(documentId)
+    @Transactional(readOnly = true)
+    public Document checkDocumentPermission(Long documentId, Long userId) {
+        Document document = documentRepository.findById(documentId)
                 .orElseThrow(() -> new RuntimeException("文档不存在"));
+
+        boolean hasPermission = document.getOwner().getId().equals(userId) ||
+                document.getCollaborators().stream().anyMatch(c -> c.getId().equals(userId));
+
+        if (!hasPermission) {
+            throw new RuntimeException("无权访问此文档");
+        }
+
+        return document;
     }
 
     /**
      * 获取文档的在线用户
      */
-    public List<User> getOnlineUsers(Long documentId) {
-        List<CollaborationSession> sessions = collaborationSessionRepository.findByDocumentId(documentId);
-        return sessions.stream()
-                .map(CollaborationSession::getUser)
-                .collect(Collectors.toList());
+    public List<PresenceUser> getOnlineUsers(Long documentId) {
+        return presenceRegistry.getOnlineUsers(documentId);
+    }
+
+    private void handleDepartures(List<PresenceRegistry.Departure> departures) {
+        for (PresenceRegistry.Departure departure : departures) {
+            Long documentId = departure.getDocumentId();
+
+            // 广播用户离开通知
+            broadcastPresence(documentId, "LEFT", departure.getUser());
+
+            // 最后一个协作者离开后立即写回文档内容
+            if (!presenceRegistry.hasOnlineUsers(documentId)) {
+                documentBufferService.flush(documentId);
+            }
+        }
+    }
+
+    // 只广播发生变化的用户，客户端据此增量更新在线列表
+    private void broadcastPresence(Long documentId, String type, PresenceUser user) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("type", type);
+        message.put("user", user);
+        messagingTemplate.convertAndSend("/topic/document/" + documentId + "/users", message);
     }
-}
\ No newline at end of file
+}
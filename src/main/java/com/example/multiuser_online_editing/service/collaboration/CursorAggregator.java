@@ -0,0 +1,62 @@
+package com.example.multiuser_online_editing.service.collaboration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 光标位置合并广播
+ * 收到的光标位置只记录每个用户在每个文档中的最新位置，按固定频率把变化过的光标合并成一条消息广播，
+ * 被后续位置覆盖的中间位置直接丢弃
+ */
+@Component
+public class CursorAggregator {
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    // 文档ID -> (用户ID -> 上次广播后的最新光标位置)；读写都通过compute/remove完成，保证不会丢失更新
+    private final ConcurrentHashMap<Long, Map<Long, Integer>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 记录用户的最新光标位置
+     */
+    public void update(Long documentId, Long userId, Integer position) {
+        pending.compute(documentId, (id, cursors) -> {
+            if (cursors == null) {
+                cursors = new HashMap<>();
+            }
+            cursors.put(userId, position);
+            return cursors;
+        });
+    }
+
+    /**
+     * 每个周期为每个文档广播一条包含所有变化光标的消息
+     */
+    @Scheduled(fixedRateString = "${app.collaboration.cursor.broadcast-interval-ms}")
+    public void broadcast() {
+        for (Long documentId : pending.keySet()) {
+            Map<Long, Integer> cursors = pending.remove(documentId);
+            if (cursors == null || cursors.isEmpty()) {
+                continue;
+            }
+
+            List<Map<String, Object>> message = new ArrayList<>(cursors.size());
+            for (Map.Entry<Long, Integer> cursor : cursors.entrySet()) {
+                Map<String, Object> item = new HashMap<>();
+                item.put("userId", cursor.getKey());
+                item.put("position", cursor.getValue());
+                message.add(item);
+            }
+            messagingTemplate.convertAndSend("/topic/document/" + documentId + "/cursors", message);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.multiuser_online_editing.service.collaboration;
+
+import com.example.multiuser_online_editing.repository.document_management.DocumentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WebSocket会话对文档的访问权限缓存
+ * 每个会话对每个文档只查询一次数据库，之后的订阅、消息和向会话推送的消息直接使用缓存的结果；
+ * 协作者变化、文档删除或恢复时清除该文档的缓存（推送前重新检查，已有的订阅随之失效），会话断开时清除该会话的缓存
+ */
+@Component
+public class DocumentAccessCache {
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    // WebSocket会话ID -> 会话的用户和 (文档ID -> 是否有权访问)
+    private final ConcurrentHashMap<String, SessionAccess> sessions = new ConcurrentHashMap<>();
+
+    // 每次清除缓存时加一；查询期间发生过清除的结果不保留，避免把清除前查到的旧结果重新放入缓存
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * 用户是否有权访问文档（文档所有者或协作者，且文档未被删除）
+     */
+    public boolean isAllowed(String wsSessionId, Long documentId, Long userId) {
+        SessionAccess session = sessions.computeIfAbsent(wsSessionId, k -> new SessionAccess(userId));
+        Boolean cached = session.decisions.get(documentId);
+        if (cached != null) {
+            return cached;
+        }
+
+        long before = generation.get();
+        boolean allowed = documentRepository.isAccessible(documentId, userId);
+        session.decisions.put(documentId, allowed);
+        // 先放入再检查：清除总是先加代数再移除，查询期间或放入之前发生的清除都会在这里被发现
+        if (generation.get() != before) {
+            session.decisions.remove(documentId, allowed);
+        }
+        return allowed;
+    }
+
+    /**
+     * 向会话推送文档消息前检查会话的用户是否仍有权访问（访问权限被撤销后，已有的订阅不再收到消息）
+     */
+    public boolean isDeliverable(String wsSessionId, Long documentId) {
+        SessionAccess session = sessions.get(wsSessionId);
+        return session != null && isAllowed(wsSessionId, documentId, session.userId);
+    }
+
+    /**
+     * 清除文档的缓存；在事务中调用时等到事务提交后再清除，避免并发请求重新缓存旧的结果
+     */
+    public void invalidate(Long documentId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(documentId);
+                }
+            });
+        } else {
+            evict(documentId);
+        }
+    }
+
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        sessions.remove(event.getSessionId());
+    }
+
+    private void evict(Long documentId) {
+        generation.incrementAndGet();
+        for (SessionAccess session : sessions.values()) {
+            session.decisions.remove(documentId);
+        }
+    }
+
+    private static class SessionAccess {
+        private final Long userId;
+        private final Map<Long, Boolean> decisions = new ConcurrentHashMap<>();
+
+        private SessionAccess(Long userId) {
+            this.userId = userId;
+        }
+    }
+}
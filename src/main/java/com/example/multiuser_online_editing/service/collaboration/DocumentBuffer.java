@@ -0,0 +1,51 @@
+package com.example.multiuser_online_editing.service.collaboration;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 内存中正在编辑的文档（热文档）
+ * 所有字段的读写都必须在 synchronized (buffer) 中进行，通常通过 DocumentBufferService.update 完成
+ */
+public class DocumentBuffer {
+    private final Long documentId;
+    private volatile String content; // 文档的权威内容
+    private long version; // 当前版本号
+    private long persistedVersion; // 已写回数据库的版本号
+    private long snapshotVersion; // 最近一次写入快照的版本号
+    private long lastAccessTime;
+    private boolean evicted = false; // 已被移出缓冲区，不能再修改
+    private final Deque<AppliedOperation> history = new ArrayDeque<>(); // 最近应用的操作，用于变换并发操作
+    private final List<AppliedOperation> unpersisted = new ArrayList<>(); // 尚未写入操作日志的操作
+
+    public DocumentBuffer(Long documentId, String content, long version) {
+        this.documentId = documentId;
+        this.content = content;
+        this.version = version;
+        this.persistedVersion = version;
+        this.snapshotVersion = version;
+        this.lastAccessTime = System.currentTimeMillis();
+    }
+
+    public boolean isDirty() {
+        return version > persistedVersion;
+    }
+
+    public Long getDocumentId() { return documentId; }
+    public String getContent() { return content; }
+    public void setContent(String content) { this.content = content; }
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+    public long getPersistedVersion() { return persistedVersion; }
+    public void setPersistedVersion(long persistedVersion) { this.persistedVersion = persistedVersion; }
+    public long getLastAccessTime() { return lastAccessTime; }
+    public void setLastAccessTime(long lastAccessTime) { this.lastAccessTime = lastAccessTime; }
+    public boolean isEvicted() { return evicted; }
+    public void setEvicted(boolean evicted) { this.evicted = evicted; }
+    public long getSnapshotVersion() { return snapshotVersion; }
+    public void setSnapshotVersion(long snapshotVersion) { this.snapshotVersion = snapshotVersion; }
+    public Deque<AppliedOperation> getHistory() { return history; }
+    public List<AppliedOperation> getUnpersisted() { return unpersisted; }
+}
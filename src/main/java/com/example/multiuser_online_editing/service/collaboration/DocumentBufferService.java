@@ -0,0 +1,430 @@
+package com.example.multiuser_online_editing.service.collaboration;
+
+import com.example.multiuser_online_editing.entity.document_management.Document;
+import com.example.multiuser_online_editing.repository.document_management.DocumentSnapshotRepository;
+import com.example.multiuser_online_editing.service.document_management.SearchIndexService;
+import com.example.multiuser_online_editing.service.document_management.SearchResultCache;
+import com.example.multiuser_online_editing.util.ContentText;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 热文档缓冲区
+ * 正在编辑的文档内容保存在内存中，所有修改只作用于缓冲区；脏数据按固定间隔（或最后一个协作者离开时）
+ * 以JDBC批量更新的方式写回数据库。空闲或超出内存预算的缓冲区按LRU顺序写回后移除
+ * 写回内容时一并更新列表使用的摘要；同时把新操作追加到操作日志，每隔一定数量的操作写入一个快照，并清理最早快照之前的日志
+ */
+@Service
+public class DocumentBufferService {
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentBufferService.class);
+
+    private static final String FLUSH_SQL =
+            "UPDATE documents SET content = ?, plain_text = ?, snippet = ?, version = ?, updated_at = ? WHERE id = ?";
+
+    private static final String INSERT_OPERATION_SQL =
+            "INSERT INTO document_operations (document_id, version, user_id, operation, created_at) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String INSERT_SNAPSHOT_SQL =
+            "INSERT INTO document_snapshots (document_id, version, content, created_at) VALUES (?, ?, ?, ?)";
+
+    @Autowired
+    private DocumentSnapshotRepository documentSnapshotRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Autowired
+    private SearchResultCache searchResultCache;
+
+    @Value("${app.collaboration.buffer.max-documents}")
+    private int maxDocuments; // 缓冲区最多容纳的文档数
+
+    @Value("${app.collaboration.buffer.max-memory-mb}")
+    private long maxMemoryMb; // 缓冲区文档内容占用内存的上限
+
+    @Value("${app.collaboration.buffer.idle-timeout-ms}")
+    private long idleTimeoutMs; // 超过该时间未被访问的缓冲区会被移除
+
+    @Value("${app.collaboration.history.snapshot-interval}")
+    private long snapshotInterval; // 每累计多少个操作写入一个快照
+
+    @Value("${app.collaboration.history.snapshots-retained}")
+    private int snapshotsRetained; // 每个文档保留的快照数，更早的快照和操作日志会被清理
+
+    // 按访问顺序排列，最久未访问的在前
+    private final LinkedHashMap<Long, DocumentBuffer> buffers = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Object flushLock = new Object(); // 保证同一时刻只有一次写回，避免重复写入操作日志
+
+    // 按文档ID分段的加载锁，同一文档同时只有一个线程从数据库加载，不同文档的加载基本互不阻塞
+    private final Object[] loadLocks = new Object[64];
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        // 写回使用独立事务，不受调用方事务回滚的影响
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        for (int i = 0; i < loadLocks.length; ++i) {
+            loadLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * 在文档缓冲区的锁内执行操作，文档不在缓冲区中时先从数据库加载
+     */
+    public <T> T update(Long documentId, Function<DocumentBuffer, T> action) {
+        while (true) {
+            DocumentBuffer buffer = acquire(documentId);
+            synchronized (buffer) {
+                if (buffer.isEvicted()) {
+                    continue; // 缓冲区刚被移除，重新加载
+                }
+                buffer.setLastAccessTime(System.currentTimeMillis());
+                return action.apply(buffer);
+            }
+        }
+    }
+
+    /**
+     * 只读地查看缓冲区：文档在缓冲区中时在缓冲区的锁内执行操作并返回结果，否则返回null（不从数据库加载，不写入任何数据）
+     */
+    public <T> T peek(Long documentId, Function<DocumentBuffer, T> action) {
+        DocumentBuffer buffer;
+        synchronized (buffers) {
+            buffer = buffers.get(documentId);
+        }
+        if (buffer == null) {
+            return null;
+        }
+        synchronized (buffer) {
+            return buffer.isEvicted() ? null : action.apply(buffer);
+        }
+    }
+
+    /**
+     * 把缓冲区中的最新内容和版本号覆盖到文档实体上（实体的这两个字段不会被JPA写回数据库）
+     */
+    public void overlay(Document document) {
+        DocumentBuffer buffer;
+        synchronized (buffers) {
+            buffer = buffers.get(document.getId());
+        }
+        if (buffer == null) {
+            return;
+        }
+        synchronized (buffer) {
+            if (!buffer.isEvicted()) {
+                document.setContent(buffer.getContent());
+                document.setVersion(buffer.getVersion());
+            }
+        }
+    }
+
+    /**
+     * 立即写回单个文档（例如最后一个协作者离开时）
+     */
+    public void flush(Long documentId) {
+        DocumentBuffer buffer;
+        synchronized (buffers) {
+            buffer = buffers.get(documentId);
+        }
+        if (buffer != null) {
+            flush(List.of(buffer));
+        }
+    }
+
+    /**
+     * 丢弃文档的缓冲区而不写回（文档被永久删除时）
+     */
+    public void discard(Long documentId) {
+        DocumentBuffer buffer;
+        synchronized (buffers) {
+            buffer = buffers.remove(documentId);
+        }
+        if (buffer != null) {
+            synchronized (buffer) {
+                buffer.setEvicted(true);
+            }
+        }
+    }
+
+    /**
+     * 定时批量写回所有脏缓冲区，并移除空闲的以及超出预算的缓冲区
+     */
+    @Scheduled(fixedDelayString = "${app.collaboration.buffer.flush-interval-ms}")
+    public void flushAll() {
+        List<DocumentBuffer> snapshot;
+        synchronized (buffers) {
+            snapshot = new ArrayList<>(buffers.values());
+        }
+        flush(snapshot);
+
+        long idleBefore = System.currentTimeMillis() - idleTimeoutMs;
+        List<DocumentBuffer> idle = new ArrayList<>();
+        for (DocumentBuffer buffer : snapshot) {
+            synchronized (buffer) {
+                if (buffer.getLastAccessTime() < idleBefore) {
+                    idle.add(buffer);
+                }
+            }
+        }
+        evict(idle);
+        enforceBudget(null);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushAll();
+    }
+
+    private DocumentBuffer acquire(Long documentId) {
+        DocumentBuffer buffer;
+        synchronized (buffers) {
+            buffer = buffers.get(documentId);
+        }
+        if (buffer != null) {
+            return buffer;
+        }
+
+        // 在文档的加载锁内（而不是缓冲区整体的锁内）加载，数据库IO不阻塞其他文档；
+        // 同一文档的并发加载排队，后来的直接使用先装入的缓冲区，不会用加载期间已经过时的内容覆盖它
+        synchronized (loadLocks[Math.floorMod(documentId.hashCode(), loadLocks.length)]) {
+            synchronized (buffers) {
+                buffer = buffers.get(documentId);
+            }
+            if (buffer != null) {
+                return buffer;
+            }
+
+            // 缓冲区只有在写回提交之后才会被移除，因此这里总能读到移除前写回的内容；
+            // 在新事务中用JDBC读取，不使用调用方事务中缓存的实体和更早的一致性读视图
+            List<Map<String, Object>> rows = transactionTemplate.execute(status -> jdbcTemplate.queryForList(
+                    "SELECT content, version FROM documents WHERE id = ?", documentId));
+            if (rows == null || rows.isEmpty()) {
+                throw new RuntimeException("文档不存在");
+            }
+            String content = rows.get(0).get("content") == null ? "" : (String) rows.get(0).get("content");
+            long version = rows.get(0).get("version") == null ? 0 : ((Number) rows.get(0).get("version")).longValue();
+            buffer = new DocumentBuffer(documentId, content, version);
+            initSnapshot(buffer, content, version);
+            synchronized (buffers) {
+                buffers.put(documentId, buffer);
+            }
+        }
+        enforceBudget(documentId);
+        return buffer;
+    }
+
+    // 文档还没有快照时以加载时的内容写入基准快照，之后的操作日志都从这里开始回放
+    private void initSnapshot(DocumentBuffer buffer, String content, long version) {
+        Long latest = documentSnapshotRepository.findLatestVersion(buffer.getDocumentId());
+        if (latest == null) {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(INSERT_SNAPSHOT_SQL,
+                    buffer.getDocumentId(), version, content, now));
+            latest = version;
+        }
+        synchronized (buffer) {
+            buffer.setSnapshotVersion(latest);
+        }
+    }
+
+    // 超出文档数或内存预算时，按LRU顺序移除缓冲区（keep为刚加载的文档，不移除）
+    // 只移除已经写回的缓冲区，不在调用方的线程上写数据库；脏缓冲区由定时写回（flushAll）写回后再按预算移除
+    private void enforceBudget(Long keep) {
+        synchronized (buffers) {
+            long maxChars = maxMemoryMb * 1024 * 1024 / 2; // Java字符串每个字符按2字节估算
+            long totalChars = 0;
+            for (DocumentBuffer buffer : buffers.values()) {
+                totalChars += buffer.getContent().length();
+            }
+
+            int remaining = buffers.size();
+            Iterator<DocumentBuffer> eldest = buffers.values().iterator();
+            while (eldest.hasNext() && remaining > 1 && (remaining > maxDocuments || totalChars > maxChars)) {
+                DocumentBuffer buffer = eldest.next();
+                synchronized (buffer) {
+                    if (buffer.isDirty() || buffer.getDocumentId().equals(keep)) {
+                        continue;
+                    }
+                    eldest.remove();
+                    buffer.setEvicted(true);
+                }
+                totalChars -= buffer.getContent().length();
+                --remaining;
+            }
+        }
+    }
+
+    // 移除已经写回的缓冲区；移除前又被修改的缓冲区留到下一轮
+    private void evict(List<DocumentBuffer> candidates) {
+        synchronized (buffers) {
+            for (DocumentBuffer buffer : candidates) {
+                synchronized (buffer) {
+                    if (!buffer.isDirty() && buffers.get(buffer.getDocumentId()) == buffer) {
+                        buffers.remove(buffer.getDocumentId());
+                        buffer.setEvicted(true);
+                    }
+                }
+            }
+        }
+    }
+
+    // 把脏缓冲区的内容、新操作和到期的快照在一个事务中以JDBC批量写回数据库
+    private void flush(List<DocumentBuffer> candidates) {
+        synchronized (flushLock) {
+            List<FlushItem> items = new ArrayList<>();
+            for (DocumentBuffer buffer : candidates) {
+                synchronized (buffer) {
+                    if (buffer.isDirty() && !buffer.isEvicted()) {
+                        boolean snapshot = buffer.getVersion() - buffer.getSnapshotVersion() >= snapshotInterval;
+                        items.add(new FlushItem(buffer, buffer.getContent(), buffer.getVersion(),
+                                new ArrayList<>(buffer.getUnpersisted()), snapshot));
+                    }
+                }
+            }
+            if (items.isEmpty()) {
+                return;
+            }
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> write(items));
+            } catch (RuntimeException e) {
+                // 未写回的操作保留在缓冲区中，超过上限后DocumentSyncService拒绝新的编辑，不会无限增长
+                log.error("写回文档缓冲区失败，将在下次刷新时重试", e);
+                return;
+            }
+
+            for (FlushItem item : items) {
+                searchIndexService.scheduleReindex(item.buffer.getDocumentId());
+                searchResultCache.invalidateDocument(item.buffer.getDocumentId());
+                DocumentBuffer buffer = item.buffer;
+                synchronized (buffer) {
+                    buffer.setPersistedVersion(Math.max(buffer.getPersistedVersion(), item.version));
+                    buffer.getUnpersisted().removeIf(op -> op.getVersion() <= item.version);
+                    if (item.snapshot) {
+                        buffer.setSnapshotVersion(Math.max(buffer.getSnapshotVersion(), item.version));
+                    }
+                }
+            }
+        }
+    }
+
+    private void write(List<FlushItem> items) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> documentArgs = new ArrayList<>();
+        List<Object[]> operationArgs = new ArrayList<>();
+        List<Object[]> snapshotArgs = new ArrayList<>();
+
+        for (FlushItem item : items) {
+            Long documentId = item.buffer.getDocumentId();
+            String plainText = ContentText.toPlainText(item.content);
+            documentArgs.add(new Object[]{item.content, plainText, ContentText.plainSnippet(plainText),
+                    item.version, now, documentId});
+            for (AppliedOperation op : item.operations) {
+                operationArgs.add(new Object[]{documentId, op.getVersion(), op.getUserId(),
+                        toJson(op.getOperation()), now});
+            }
+            if (item.snapshot) {
+                snapshotArgs.add(new Object[]{documentId, item.version, item.content, now});
+            }
+        }
+
+        jdbcTemplate.batchUpdate(FLUSH_SQL, documentArgs);
+        jdbcTemplate.batchUpdate(INSERT_OPERATION_SQL, operationArgs);
+        if (!snapshotArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SNAPSHOT_SQL, snapshotArgs);
+            for (FlushItem item : items) {
+                if (item.snapshot) {
+                    compact(item.buffer.getDocumentId());
+                }
+            }
+        }
+    }
+
+    // 只保留最近的若干个快照，并删除最早保留的快照之前的操作日志
+    // 已保存的草稿所基于的版本必须能够重建，因此不晚于最早草稿基准版本的最近快照及其之后的历史也会保留
+    // （草稿保存时总是基于当前版本，在写入数据库之前的几秒内不会落到保留范围之外）
+    private void compact(Long documentId) {
+        List<Long> oldest = jdbcTemplate.queryForList(
+                "SELECT version FROM document_snapshots WHERE document_id = ? ORDER BY version DESC LIMIT 1 OFFSET ?",
+                Long.class, documentId, snapshotsRetained - 1);
+        if (oldest.isEmpty()) {
+            return;
+        }
+        Long oldestVersion = oldest.get(0);
+        Long draftBase = jdbcTemplate.queryForObject(
+                "SELECT MIN(base_version) FROM document_drafts WHERE document_id = ?", Long.class, documentId);
+        if (draftBase != null && draftBase < oldestVersion) {
+            List<Long> pinned = jdbcTemplate.queryForList(
+                    "SELECT MAX(version) FROM document_snapshots WHERE document_id = ? AND version <= ?",
+                    Long.class, documentId, draftBase);
+            if (pinned.get(0) != null) {
+                oldestVersion = pinned.get(0);
+            }
+        }
+        jdbcTemplate.update("DELETE FROM document_snapshots WHERE document_id = ? AND version < ?",
+                documentId, oldestVersion);
+        jdbcTemplate.update("DELETE FROM document_operations WHERE document_id = ? AND version <= ?",
+                documentId, oldestVersion);
+    }
+
+    private String toJson(TextOperation operation) {
+        try {
+            return objectMapper.writeValueAsString(operation.toJson());
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("操作序列化失败", e);
+        }
+    }
+
+    // 一次写回中单个文档的数据，在缓冲区的锁内复制，写数据库时不再持有锁
+    private static class FlushItem {
+        private final DocumentBuffer buffer;
+        private final String content;
+        private final long version;
+        private final List<AppliedOperation> operations;
+        private final boolean snapshot;
+
+        private FlushItem(DocumentBuffer buffer, String content, long version,
+                          List<AppliedOperation> operations, boolean snapshot) {
+            this.buffer = buffer;
+            this.content = content;
+            this.version = version;
+            this.operations = operations;
+            this.snapshot = snapshot;
+        }
+    }
+}
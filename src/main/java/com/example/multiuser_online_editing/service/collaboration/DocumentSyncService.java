@@ -0,0 +1,247 @@
+package com.example.multiuser_online_editing.service.collaboration;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于操作变换(OT)的实时文档同步
+ * 文档的权威文本和版本号保存在DocumentBufferService中，客户端提交基于某个版本的操作，
+ * 服务端将其与该版本之后的并发操作依次变换后应用，并只广播这个很小的操作
+ */
+@Service
+public class DocumentSyncService {
+
+    @Autowired
+    private DocumentBufferService documentBufferService;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.collaboration.history-size}")
+    private int historySize; // 每个文档保留的最近操作数，决定客户端的基准版本最多可以落后多少
+
+    @Value("${app.collaboration.catch-up.max-operations}")
+    private int catchUpMaxOperations; // 落后超过该操作数时直接返回快照
+
+    @Value("${app.collaboration.buffer.max-unpersisted}")
+    private int maxUnpersisted; // 每个文档尚未写回数据库的操作数上限
+
+    /**
+     * 应用客户端提交的操作，返回变换后实际生效的操作
+     */
+    public AppliedOperation applyOperation(Long documentId, long baseVersion, TextOperation operation,
+                                           Long userId, String clientId) {
+        // 在缓冲区的锁内广播，保证订阅者按版本顺序收到操作
+        return documentBufferService.update(documentId, buffer -> {
+            AppliedOperation applied = apply(buffer, baseVersion, operation, userId, clientId);
+            broadcast(documentId, applied);
+            return applied;
+        });
+    }
+
+    /**
+     * 以整篇内容的形式提交修改（例如通过REST保存文档），服务端计算差异后作为一个操作应用，返回应用后的版本号
+     */
+    public long applyContent(Long documentId, String content, Long userId) {
+        return documentBufferService.update(documentId, buffer -> {
+            TextOperation operation = TextOperation.diff(buffer.getContent(), content);
+            if (operation.isNoop()) {
+                return buffer.getVersion();
+            }
+            AppliedOperation applied = apply(buffer, buffer.getVersion(), operation, userId, null);
+            broadcast(documentId, applied);
+            return applied.getVersion();
+        });
+    }
+
+    /**
+     * 把基于baseVersion的操作变换到文档的当前版本但不应用（例如自动保存的草稿），返回当前版本号和变换后的操作
+     * 基准版本已不在内存历史中，或操作与基准内容的长度不一致时抛出异常
+     */
+    public Map<String, Object> rebase(Long documentId, long baseVersion, TextOperation operation) {
+        return documentBufferService.update(documentId, buffer -> {
+            Map<String, Object> rebased = new HashMap<>();
+            rebased.put("operation", transformToCurrent(buffer, baseVersion, operation));
+            rebased.put("version", buffer.getVersion());
+            return rebased;
+        });
+    }
+
+    /**
+     * 文档当前的权威内容和版本号
+     * 只读：文档在缓冲区中时取缓冲区中的内容，否则直接读取数据库（不加载缓冲区，不写任何数据）
+     */
+    public Map<String, Object> getSnapshot(Long documentId) {
+        Map<String, Object> snapshot = documentBufferService.peek(documentId, buffer -> {
+            Map<String, Object> result = new HashMap<>();
+            result.put("content", buffer.getContent());
+            result.put("version", buffer.getVersion());
+            return result;
+        });
+        if (snapshot != null) {
+            return snapshot;
+        }
+        // 缓冲区只有写回之后才会被移除，不在缓冲区中的文档数据库中的内容就是最新的
+        Map<String, Object> row = loadDocument(documentId);
+        snapshot = new HashMap<>();
+        snapshot.put("content", row.get("content") == null ? "" : row.get("content"));
+        snapshot.put("version", ((Number) row.get("version")).longValue());
+        return snapshot;
+    }
+
+    /**
+     * 客户端（例如断线重连后）从已知版本追赶到最新版本
+     * 落后不多时只返回这之后的操作；落后太多或所需操作已不在内存（或操作日志）中时返回完整快照
+     * 只读：文档不在缓冲区中时从数据库中的文档和操作日志读取，不加载缓冲区
+     */
+    public Map<String, Object> catchUp(Long documentId, long sinceVersion) {
+        Map<String, Object> result = documentBufferService.peek(documentId, buffer -> {
+            List<AppliedOperation> operations = new ArrayList<>();
+            long gap = buffer.getVersion() - sinceVersion;
+            Deque<AppliedOperation> history = buffer.getHistory();
+            if (gap >= 0 && gap <= catchUpMaxOperations && gap <= history.size()) {
+                for (AppliedOperation op : history) {
+                    if (op.getVersion() > sinceVersion) {
+                        operations.add(op);
+                    }
+                }
+                return catchUpResult(buffer.getVersion(), operations, null);
+            }
+            return catchUpResult(buffer.getVersion(), null, buffer.getContent());
+        });
+        if (result != null) {
+            return result;
+        }
+
+        Map<String, Object> row = loadDocument(documentId);
+        long version = ((Number) row.get("version")).longValue();
+        String content = row.get("content") == null ? "" : (String) row.get("content");
+        long gap = version - sinceVersion;
+        if (gap >= 0 && gap <= catchUpMaxOperations) {
+            // 只取到读取文档时的版本为止（之后并发写回的操作不属于这个版本），日志已被清理时返回快照
+            List<AppliedOperation> operations = jdbcTemplate.query(
+                    "SELECT version, user_id, operation FROM document_operations " +
+                            "WHERE document_id = ? AND version > ? AND version <= ? ORDER BY version",
+                    (rs, rowNum) -> new AppliedOperation(rs.getLong(1), parse(rs.getString(3)),
+                            rs.getObject(2, Long.class), null),
+                    documentId, sinceVersion, version);
+            if (operations.size() == gap) {
+                return catchUpResult(version, operations, null);
+            }
+        }
+        return catchUpResult(version, null, content);
+    }
+
+    // operations不为null时返回这些操作，否则返回完整内容
+    private Map<String, Object> catchUpResult(long version, List<AppliedOperation> operations, String content) {
+        Map<String, Object> result = new HashMap<>();
+        if (operations != null) {
+            List<Map<String, Object>> messages = new ArrayList<>();
+            for (AppliedOperation op : operations) {
+                messages.add(toMessage(op));
+            }
+            result.put("type", "operations");
+            result.put("operations", messages);
+        } else {
+            result.put("type", "snapshot");
+            result.put("content", content);
+        }
+        result.put("version", version);
+        return result;
+    }
+
+    private Map<String, Object> loadDocument(Long documentId) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT content, version FROM documents WHERE id = ?", documentId);
+        if (rows.isEmpty()) {
+            throw new RuntimeException("文档不存在");
+        }
+        return rows.get(0);
+    }
+
+    private TextOperation parse(String json) {
+        try {
+            return TextOperation.fromJson(objectMapper.readValue(json, List.class));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("操作日志已损坏", e);
+        }
+    }
+
+    // 在缓冲区的锁内把操作变换到当前版本，然后应用
+    private AppliedOperation apply(DocumentBuffer buffer, long baseVersion, TextOperation operation,
+                                   Long userId, String clientId) {
+        // 写回数据库持续失败时未写回的操作会一直累积，达到上限后拒绝新的编辑，让用户知道修改暂时无法保存
+        if (buffer.getUnpersisted().size() >= maxUnpersisted) {
+            throw new RuntimeException("文档暂时无法保存到数据库，请稍后再编辑");
+        }
+        operation = transformToCurrent(buffer, baseVersion, operation);
+        Deque<AppliedOperation> history = buffer.getHistory();
+
+        buffer.setContent(operation.apply(buffer.getContent()));
+        buffer.setVersion(buffer.getVersion() + 1);
+
+        AppliedOperation applied = new AppliedOperation(buffer.getVersion(), operation, userId, clientId);
+        buffer.getUnpersisted().add(applied);
+        history.addLast(applied);
+        while (history.size() > historySize) {
+            history.removeFirst();
+        }
+        return applied;
+    }
+
+    // 在缓冲区的锁内把操作与基准版本之后的所有并发操作依次变换，并检查变换后的操作与当前内容的长度一致
+    private TextOperation transformToCurrent(DocumentBuffer buffer, long baseVersion, TextOperation operation) {
+        Deque<AppliedOperation> history = buffer.getHistory();
+        if (baseVersion > buffer.getVersion() || baseVersion < buffer.getVersion() - history.size()) {
+            throw new RuntimeException("操作的基准版本已失效，请重新同步文档");
+        }
+
+        Iterator<AppliedOperation> concurrent = history.descendingIterator();
+        Deque<AppliedOperation> newer = new ArrayDeque<>();
+        while (concurrent.hasNext()) {
+            AppliedOperation op = concurrent.next();
+            if (op.getVersion() <= baseVersion) break;
+            newer.addFirst(op);
+        }
+        for (AppliedOperation op : newer) {
+            operation = TextOperation.transform(operation, op.getOperation())[0];
+        }
+        if (operation.getBaseLength() != buffer.getContent().length()) {
+            throw new RuntimeException("操作与文档长度不匹配");
+        }
+        return operation;
+    }
+
+    private void broadcast(Long documentId, AppliedOperation applied) {
+        messagingTemplate.convertAndSend("/topic/document/" + documentId + "/content", toMessage(applied));
+    }
+
+    private Map<String, Object> toMessage(AppliedOperation applied) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("type", "operation");
+        message.put("version", applied.getVersion());
+        message.put("operation", applied.getOperation().toJson());
+        message.put("userId", applied.getUserId());
+        message.put("clientId", applied.getClientId());
+        return message;
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.multiuser_online_editing.service.collaboration;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * 内存中的文档在线状态
+ * 每个打开文档的浏览器标签页对应一个客户端会话（sessionId），同一用户可以同时有多个会话；
+ * 用户的第一个会话加入时视为上线，最后一个会话离开时视为下线
+ * 对同一文档的修改都在 ConcurrentHashMap.compute 中完成，保证原子性
+ */
+@Component
+public class PresenceRegistry {
+
+    // 文档ID -> (客户端会话ID -> 在线会话)
+    private final ConcurrentHashMap<Long, Map<String, PresenceEntry>> documents = new ConcurrentHashMap<>();
+
+    // WebSocket会话ID -> 通过该连接发送过心跳的文档，用于断开连接时快速找到对应的在线会话
+    private final ConcurrentHashMap<String, Set<Long>> socketDocuments = new ConcurrentHashMap<>();
+
+    /**
+     * 登记客户端会话，用户此前不在线时返回true
+     */
+    public boolean join(Long documentId, PresenceUser user, String sessionId) {
+        boolean[] joined = {false};
+        documents.compute(documentId, (id, sessions) -> {
+            if (sessions == null) {
+                sessions = new HashMap<>();
+            }
+            joined[0] = !containsUser(sessions, user.getId());
+            PresenceEntry existing = sessions.get(sessionId);
+            PresenceEntry entry = new PresenceEntry(user, sessionId);
+            if (existing != null) {
+                entry.wsSessionId = existing.wsSessionId;
+            }
+            sessions.put(sessionId, entry);
+            return sessions;
+        });
+        return joined[0];
+    }
+
+    /**
+     * 处理心跳：刷新活动时间并把客户端会话绑定到WebSocket连接，会话不存在（已过期）时返回false
+     */
+    public boolean touch(Long documentId, String sessionId, String wsSessionId) {
+        boolean[] found = {false};
+        documents.computeIfPresent(documentId, (id, sessions) -> {
+            PresenceEntry entry = sessions.get(sessionId);
+            if (entry != null) {
+                found[0] = true;
+                entry.lastSeen = System.currentTimeMillis();
+                entry.wsSessionId = wsSessionId;
+            }
+            return sessions;
+        });
+        if (found[0] && wsSessionId != null) {
+            socketDocuments.computeIfAbsent(wsSessionId, k -> ConcurrentHashMap.newKeySet()).add(documentId);
+        }
+        return found[0];
+    }
+
+    /**
+     * 客户端主动离开；sessionId为空时移除该用户在文档中的所有会话
+     */
+    public List<Departure> leave(Long documentId, Long userId, String sessionId) {
+        return remove(documentId, entry -> entry.user.getId().equals(userId) &&
+                (sessionId == null || sessionId.equals(entry.sessionId)));
+    }
+
+    /**
+     * WebSocket连接断开，移除绑定在该连接上的所有会话
+     */
+    public List<Departure> disconnect(String wsSessionId) {
+        Set<Long> documentIds = socketDocuments.remove(wsSessionId);
+        List<Departure> departures = new ArrayList<>();
+        if (documentIds != null) {
+            for (Long documentId : documentIds) {
+                departures.addAll(remove(documentId, entry -> wsSessionId.equals(entry.wsSessionId)));
+            }
+        }
+        return departures;
+    }
+
+    /**
+     * 移除在指定时间之前没有活动的会话
+     */
+    public List<Departure> expire(long lastSeenBefore) {
+        List<Departure> departures = new ArrayList<>();
+        for (Long documentId : documents.keySet()) {
+            departures.addAll(remove(documentId, entry -> entry.lastSeen < lastSeenBefore));
+        }
+        return departures;
+    }
+
+    /**
+     * 文档的在线用户（同一用户只出现一次）
+     */
+    public List<PresenceUser> getOnlineUsers(Long documentId) {
+        Map<Long, PresenceUser> users = new LinkedHashMap<>();
+        documents.computeIfPresent(documentId, (id, sessions) -> {
+            for (PresenceEntry entry : sessions.values()) {
+                users.putIfAbsent(entry.user.getId(), entry.user);
+            }
+            return sessions;
+        });
+        return new ArrayList<>(users.values());
+    }
+
+    public boolean hasOnlineUsers(Long documentId) {
+        return documents.containsKey(documentId);
+    }
+
+    // 移除满足条件的会话，返回因此下线的用户；文档没有会话后移除整个条目
+    private List<Departure> remove(Long documentId, Predicate<PresenceEntry> filter) {
+        List<Departure> departures = new ArrayList<>();
+        documents.computeIfPresent(documentId, (id, sessions) -> {
+            List<PresenceUser> removed = new ArrayList<>();
+            sessions.values().removeIf(entry -> {
+                if (filter.test(entry)) {
+                    removed.add(entry.user);
+                    return true;
+                }
+                return false;
+            });
+            for (PresenceUser user : removed) {
+                boolean reported = departures.stream().anyMatch(d -> d.getUser().getId().equals(user.getId()));
+                if (!reported && !containsUser(sessions, user.getId())) {
+                    departures.add(new Departure(documentId, user));
+                }
+            }
+            return sessions.isEmpty() ? null : sessions;
+        });
+        return departures;
+    }
+
+    private static boolean containsUser(Map<String, PresenceEntry> sessions, Long userId) {
+        return sessions.values().stream().anyMatch(entry -> entry.user.getId().equals(userId));
+    }
+
+    private static class PresenceEntry {
+        private final PresenceUser user;
+        private final String sessionId;
+        private String wsSessionId; // 尚未收到心跳时为空
+        private long lastSeen = System.currentTimeMillis();
+
+        private PresenceEntry(PresenceUser user, String sessionId) {
+            this.user = user;
+            this.sessionId = sessionId;
+        }
+    }
+
+    /**
+     * 用户在文档中下线
+     */
+    public static class Departure {
+        private final Long documentId;
+        private final PresenceUser user;
+
+        public Departure(Long documentId, PresenceUser user) {
+            this.documentId = documentId;
+            this.user = user;
+        }
+
+        public Long getDocumentId() { return documentId; }
+        public PresenceUser getUser() { return user; }
+    }
+}
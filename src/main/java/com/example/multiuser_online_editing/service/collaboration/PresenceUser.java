@@ -0,0 +1,25 @@
+package com.example.multiuser_online_editing.service.collaboration;
+
+import com.example.multiuser_online_editing.entity.user_management.User;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * 在线状态中展示的用户信息（只包含前端显示头像和用户名所需的字段）
+ */
+public class PresenceUser {
+    private final Long id;
+    private final String username;
+
+    @JsonProperty("avatar_path")
+    private final String avatarPath;
+
+    public PresenceUser(User user) {
+        this.id = user.getId();
+        this.username = user.getUsername();
+        this.avatarPath = user.getAvatarPath();
+    }
+
+    public Long getId() { return id; }
+    public String getUsername() { return username; }
+    public String getAvatarPath() { return avatarPath; }
+}
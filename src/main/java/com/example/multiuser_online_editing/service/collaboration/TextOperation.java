@@ -0,0 +1,216 @@
+package com.example.multiuser_online_editing.service.collaboration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 文本操作（Operational Transformation）
+ * 一个操作由若干分量组成：正整数表示保留(retain)若干字符，负整数表示删除(delete)若干字符，字符串表示插入(insert)
+ * 序列化格式与ot.js保持一致，例如 [5, "abc", -3]
+ */
+public class TextOperation {
+    private final List<Object> components = new ArrayList<>();
+    private int baseLength = 0; // 操作作用前的文本长度
+    private int targetLength = 0; // 操作作用后的文本长度
+
+    public TextOperation retain(int n) {
+        if (n < 0) throw new RuntimeException("保留长度不能为负数");
+        if (n == 0) return this;
+        baseLength += n;
+        targetLength += n;
+        int last = components.size() - 1;
+        if (last >= 0 && isRetain(components.get(last))) {
+            components.set(last, (Integer) components.get(last) + n);
+        } else {
+            components.add(n);
+        }
+        return this;
+    }
+
+    public TextOperation insert(String str) {
+        if (str == null || str.isEmpty()) return this;
+        targetLength += str.length();
+        int last = components.size() - 1;
+        if (last >= 0 && isInsert(components.get(last))) {
+            components.set(last, components.get(last) + str);
+        } else if (last >= 0 && isDelete(components.get(last))) {
+            // 保证插入总是出现在删除之前，使等价的操作拥有相同的表示
+            if (last >= 1 && isInsert(components.get(last - 1))) {
+                components.set(last - 1, components.get(last - 1) + str);
+            } else {
+                components.add(last, str);
+            }
+        } else {
+            components.add(str);
+        }
+        return this;
+    }
+
+    public TextOperation delete(int n) {
+        if (n < 0) throw new RuntimeException("删除长度不能为负数");
+        if (n == 0) return this;
+        baseLength += n;
+        int last = components.size() - 1;
+        if (last >= 0 && isDelete(components.get(last))) {
+            components.set(last, (Integer) components.get(last) - n);
+        } else {
+            components.add(-n);
+        }
+        return this;
+    }
+
+    public boolean isNoop() {
+        return components.isEmpty() || (components.size() == 1 && isRetain(components.get(0)));
+    }
+
+    public int getBaseLength() { return baseLength; }
+    public int getTargetLength() { return targetLength; }
+
+    // 将操作作用于文本
+    public String apply(String text) {
+        if (text.length() != baseLength) {
+            throw new RuntimeException("操作与文档长度不匹配");
+        }
+        StringBuilder result = new StringBuilder(targetLength);
+        int index = 0;
+        for (Object component : components) {
+            if (isRetain(component)) {
+                int n = (Integer) component;
+                result.append(text, index, index + n);
+                index += n;
+            } else if (isInsert(component)) {
+                result.append((String) component);
+            } else {
+                index -= (Integer) component;
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * 变换两个基于同一文本的并发操作a和b，返回[a', b']，满足 apply(apply(s, a), b') == apply(apply(s, b), a')
+     * 两个操作在同一位置插入时，a的插入排在前面
+     */
+    public static TextOperation[] transform(TextOperation a, TextOperation b) {
+        if (a.baseLength != b.baseLength) {
+            throw new RuntimeException("并发操作的基准长度不一致");
+        }
+
+        TextOperation aPrime = new TextOperation();
+        TextOperation bPrime = new TextOperation();
+        List<Object> ops1 = a.components;
+        List<Object> ops2 = b.components;
+        int i1 = 0, i2 = 0;
+        Object o1 = i1 < ops1.size() ? ops1.get(i1++) : null;
+        Object o2 = i2 < ops2.size() ? ops2.get(i2++) : null;
+
+        while (o1 != null || o2 != null) {
+            if (o1 != null && isInsert(o1)) {
+                aPrime.insert((String) o1);
+                bPrime.retain(((String) o1).length());
+                o1 = i1 < ops1.size() ? ops1.get(i1++) : null;
+                continue;
+            }
+            if (o2 != null && isInsert(o2)) {
+                aPrime.retain(((String) o2).length());
+                bPrime.insert((String) o2);
+                o2 = i2 < ops2.size() ? ops2.get(i2++) : null;
+                continue;
+            }
+            if (o1 == null || o2 == null) {
+                throw new RuntimeException("并发操作的长度不一致");
+            }
+
+            int n1 = (Integer) o1;
+            int n2 = (Integer) o2;
+            int min;
+            if (n1 > 0 && n2 > 0) { // retain / retain
+                min = Math.min(n1, n2);
+                aPrime.retain(min);
+                bPrime.retain(min);
+            } else if (n1 < 0 && n2 < 0) { // delete / delete
+                min = Math.min(-n1, -n2);
+            } else if (n1 < 0) { // delete / retain
+                min = Math.min(-n1, n2);
+                aPrime.delete(min);
+            } else { // retain / delete
+                min = Math.min(n1, -n2);
+                bPrime.delete(min);
+            }
+
+            o1 = consume(n1, min);
+            o2 = consume(n2, min);
+            if (o1 == null) o1 = i1 < ops1.size() ? ops1.get(i1++) : null;
+            if (o2 == null) o2 = i2 < ops2.size() ? ops2.get(i2++) : null;
+        }
+
+        return new TextOperation[]{aPrime, bPrime};
+    }
+
+    // 从一个retain或delete分量中消耗min个字符，分量耗尽时返回null
+    private static Object consume(int component, int min) {
+        int rest = component > 0 ? component - min : component + min;
+        return rest == 0 ? null : rest;
+    }
+
+    /**
+     * 计算把oldText变为newText的操作（去掉公共前缀和公共后缀，中间部分整体替换）
+     */
+    public static TextOperation diff(String oldText, String newText) {
+        int prefix = 0;
+        int maxPrefix = Math.min(oldText.length(), newText.length());
+        while (prefix < maxPrefix && oldText.charAt(prefix) == newText.charAt(prefix)) {
+            ++prefix;
+        }
+
+        int suffix = 0;
+        int maxSuffix = maxPrefix - prefix;
+        while (suffix < maxSuffix &&
+                oldText.charAt(oldText.length() - 1 - suffix) == newText.charAt(newText.length() - 1 - suffix)) {
+            ++suffix;
+        }
+
+        return new TextOperation()
+                .retain(prefix)
+                .insert(newText.substring(prefix, newText.length() - suffix))
+                .delete(oldText.length() - prefix - suffix)
+                .retain(suffix);
+    }
+
+    // 从JSON反序列化得到的分量列表构造操作
+    public static TextOperation fromJson(List<?> json) {
+        if (json == null) {
+            throw new RuntimeException("操作不能为空");
+        }
+        TextOperation operation = new TextOperation();
+        for (Object component : json) {
+            if (component instanceof String) {
+                operation.insert((String) component);
+            } else if (component instanceof Number) {
+                int n = ((Number) component).intValue();
+                if (n > 0) operation.retain(n);
+                else operation.delete(-n);
+            } else {
+                throw new RuntimeException("无法识别的操作分量: " + component);
+            }
+        }
+        return operation;
+    }
+
+    public List<Object> toJson() {
+        return Collections.unmodifiableList(components);
+    }
+
+    private static boolean isRetain(Object component) {
+        return component instanceof Integer && (Integer) component > 0;
+    }
+
+    private static boolean isDelete(Object component) {
+        return component instanceof Integer && (Integer) component < 0;
+    }
+
+    private static boolean isInsert(Object component) {
+        return component instanceof String;
+    }
+}
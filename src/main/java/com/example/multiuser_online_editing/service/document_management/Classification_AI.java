@@ -1,9 +1,5 @@
 package com.example.multiuser_online_editing.service.document_management;
 
-import com.example.multiuser_online_editing.entity.document_management.Document;
-import com.huaban.analysis.jieba.JiebaSegmenter;
-import com.huaban.analysis.jieba.SegToken;
-
 import org.apache.commons.math3.ml.clustering.KMeansPlusPlusClusterer;
 import org.apache.commons.math3.ml.clustering.CentroidCluster;
 import org.apache.commons.math3.ml.clustering.DoublePoint;
@@ -11,157 +7,96 @@ import org.apache.commons.math3.ml.distance.EuclideanDistance;
 
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Set;
-import java.util.HashSet;
+import java.util.Map;
+import java.util.HashMap;
 
 public class Classification_AI {
-    private static JiebaSegmenter segmenter = new JiebaSegmenter(); // 中文分词器
 
-    public static List<DocumentClass> classification_AI(List<Document> accessibleDocuments, int numOfClusters) {
-        if (accessibleDocuments.isEmpty()) {
+    /**
+     * documentIds[i]的词频向量为termVectors[i]（由TermVectorCache得到，版本未变的文档不再分词）
+     */
+    public static List<DocumentClass> classification_AI(List<Long> documentIds,
+                                                        List<TermVectorCache.TermVector> termVectors, int numOfClusters) {
+        if (documentIds.isEmpty()) {
             return new ArrayList<>();
         }
 
-        // 文本预处理
-        List<String> words = preprocessDocuments(accessibleDocuments);
-
-        List<List<Double>> documentVectors = computeTFIDFScore(accessibleDocuments, words);
-
-        return performKMeans(accessibleDocuments, documentVectors, words, numOfClusters, 50);
-    }
-
-    private static List<String> preprocessDocuments(List<Document> documents) {
-        StringBuilder contentBuilder = new StringBuilder();
-        for (Document document: documents) {
-            String documentContent = document.getContent().length() > 300
-                    ? document.getContent().substring(0, 300) : document.getContent();
-            contentBuilder.append(document.getTitle()).append(" ").append(documentContent).append(" ");
-        }
-
-        String content = contentBuilder.toString();
-
-        // 转小写，并移除HTML标签
-        String cleanContent = content.toLowerCase().replaceAll("<[^>]+>", " ");
-
-        // jieba分词
-        List<SegToken> segTokens = segmenter.process(cleanContent, JiebaSegmenter.SegMode.SEARCH);
+        // 所有文档中出现过的词，按第一次出现的顺序编列号
+        Map<String, Integer> columns = new HashMap<>(); // 词 -> 向量中的列号
         List<String> words = new ArrayList<>();
-        for (SegToken segToken: segTokens) {
-            words.add(segToken.word);
-        }
-
-        // 去除停用词
-        Set<String> stopWords = getStopWords();
-        List<String> cleanWords = new ArrayList<>();
-
-        for (String word: words) {
-            String cleanWord = word.replaceAll("[^a-zA-Z0-9\\u4e00-\\u9fa5]", "");
-            // \u4e00-\u9fa5是常用汉字的unicode码
-
-            if (cleanWord.length() > 1 && !stopWords.contains(cleanWord) && !isNumeric(cleanWord)) {
-                cleanWords.add(cleanWord);
+        for (TermVectorCache.TermVector termVector : termVectors) {
+            for (String term : termVector.getTerms()) {
+                if (!columns.containsKey(term)) {
+                    columns.put(term, words.size());
+                    words.add(term);
+                }
             }
         }
 
-        // 去重处理
-        cleanWords = new ArrayList<>(new HashSet<>(cleanWords));
-
-        return cleanWords;
-    }
-
-    private static boolean isNumeric(String str) {
-        return str.matches("[0-9]+(.[0-9]*)?");
-    }
+        List<double[]> documentVectors = computeTFIDFScore(termVectors, columns, words.size());
 
-    private static Set<String> getStopWords() {
-        return Set.of("the", "a", "an", "and", "or", "but", "in", "on", "at", "to", "for",
-                "of", "with", "by", "is", "are", "was", "were", "be", "been", "being",
-                "this", "that", "these", "those", "i", "you", "he", "she", "it", "we", "they",
-                "的", "了", "在", "是", "我", "有", "和", "就", "不", "人", "都", "一", "一个",
-                "上", "也", "很", "到", "说", "要", "去", "你", "会", "着", "没有", "看", "好",
-                "自己", "这", "那", "他", "她", "它", "我们", "你们", "他们");
+        return performKMeans(documentIds, documentVectors, words, numOfClusters, 50);
     }
 
-    private static List<List<Double>> computeTFIDFScore(List<Document> documents, List<String> words) {
-        List<List<Double>> documentVectors = new ArrayList<>();
-        List<Double> idfScore = calculateIDF(documents, words);
+    private static List<double[]> computeTFIDFScore(List<TermVectorCache.TermVector> termVectors,
+                                                    Map<String, Integer> columns, int numOfWords) {
+        List<double[]> documentVectors = new ArrayList<>();
+        double[] idfScore = calculateIDF(termVectors, columns, numOfWords);
 
         // 为每个文档计算TF-IDF向量
-        for (Document doc: documents) {
-            List<Double> tfidfVector = calculateTFIDFVector(doc, words, idfScore);
-            documentVectors.add(tfidfVector);
+        for (TermVectorCache.TermVector termVector : termVectors) {
+            documentVectors.add(calculateTFIDFVector(termVector, columns, numOfWords, idfScore));
         }
 
         return documentVectors;
     }
 
-    private static List<Double> calculateIDF(List<Document> documents, List<String> words) {
-        List<Double> idfScore = new ArrayList<>();
-        int totalDocuments = documents.size();
-
-        for (String word: words) {
-            long documentsWithWord = 0;
-            for (Document document: documents) {
-                String documentContent = document.getContent().length() > 300
-                        ? document.getContent().substring(0, 300) : document.getContent();
-                String content = (document.getTitle() + " " + documentContent).toLowerCase();
-                if (content.contains(word))
-                    ++documentsWithWord;
+    private static double[] calculateIDF(List<TermVectorCache.TermVector> termVectors,
+                                         Map<String, Integer> columns, int numOfWords) {
+        int totalDocuments = termVectors.size();
+
+        // 统计包含每个词的文档数（词频向量中每个词只出现一次）
+        int[] documentsWithWord = new int[numOfWords];
+        for (TermVectorCache.TermVector termVector : termVectors) {
+            for (String term : termVector.getTerms()) {
+                ++documentsWithWord[columns.get(term)];
             }
+        }
 
+        double[] idfScore = new double[numOfWords];
+        for (int i = 0; i < numOfWords; ++i) {
             // 平滑IDF计算，避免除零
-            double idf = Math.log((double) totalDocuments / ((double) documentsWithWord + 1e-5)) + 1;
-            idfScore.add(idf);
+            idfScore[i] = Math.log((double) totalDocuments / ((double) documentsWithWord[i] + 1e-5)) + 1;
         }
 
         return idfScore;
     }
 
-    private static List<Double> calculateTFIDFVector(Document document, List<String> words, List<Double> idfScore) {
-        List<Double> vector = new ArrayList<>();
-        String documentContent = document.getContent().length() > 300
-                ? document.getContent().substring(0, 300) : document.getContent();
-        String content = (document.getTitle() + " " + documentContent).toLowerCase();
-
-        // 计算词频(TF)
-        List<Integer> wordFrequency = new ArrayList<>();
-        int totalWords = 0;
-
-        for (String word: words) {
-            int count = 0;
-            int index = 0;
-            while ((index = content.indexOf(word, index)) != -1) {
-                ++count;
-                index += word.length();
-            }
-
-            wordFrequency.add(count);
-            totalWords += count;
-        }
+    private static double[] calculateTFIDFVector(TermVectorCache.TermVector termVector, Map<String, Integer> columns,
+                                                 int numOfWords, double[] idfScore) {
+        double[] vector = new double[numOfWords];
+        String[] terms = termVector.getTerms();
+        int[] frequencies = termVector.getFrequencies();
+        int totalWords = termVector.getLength();
 
         // 计算TF-IDF
-        for (int i = 0; i < words.size(); ++i) {
-            int freq = wordFrequency.get(i);
-            double tf = totalWords > 0 ? (double) freq / totalWords : 0;
-            double idf = idfScore.get(i);
-            double tfidf = tf * idf;
-            vector.add(tfidf);
+        for (int i = 0; i < terms.length; ++i) {
+            int column = columns.get(terms[i]);
+            double tf = (double) frequencies[i] / totalWords;
+            vector[column] = tf * idfScore[column];
         }
 
         return vector;
     }
 
     private static List<DocumentClass> performKMeans(
-            List<Document> documents, List<List<Double>> vectors,
+            List<Long> documentIds, List<double[]> vectors,
             List<String> words, int k, int maxIterations
     ) {
         // 转换为KMeansPlusPlusClusterer需要的格式
         List<DoublePoint> points = new ArrayList<>();
-        for (List<Double> vector : vectors) {
-            double[] array = vector.stream()
-                    .mapToDouble(Double::doubleValue)
-                    .toArray();
-            points.add(new DoublePoint(array));
+        for (double[] vector : vectors) {
+            points.add(new DoublePoint(vector));
         }
 
         // 创建聚类器
@@ -201,10 +136,10 @@ public class Classification_AI {
         }
 
         for (int i = 0; i < clusters.size(); ++i) {
-            List<Document> clusterDocuments = new ArrayList<>();
+            List<Long> clusterDocuments = new ArrayList<>();
             List<Integer> clusterDocumentsIndices = clusterAssignments.get(i);
             for (Integer index: clusterDocumentsIndices)
-                clusterDocuments.add(documents.get(index));
+                clusterDocuments.add(documentIds.get(index));
 
             List<String> clusterThemeWords = themes.get(i);
 
@@ -0,0 +1,62 @@
+package com.example.multiuser_online_editing.service.document_management;
+
+import com.example.multiuser_online_editing.util.ContentText;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 为新增列之前创建的文档补齐由正文派生的列
+ * 启动后在定时任务线程中按主键顺序分批读取正文并批量写回，每批只占用很少的内存，不阻塞启动
+ */
+@Service
+public class DocumentBackfillService {
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentBackfillService.class);
+
+    private static final int BATCH_SIZE = 100;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private volatile long lastId; // 已经处理到的文档ID，下一批从其后开始，不再扫描处理过的行
+
+    private volatile boolean finished; // 所有文档都已补齐，新文档保存时即写入这些列
+
+    // 启动后立即执行；失败时下次从上次处理到的文档继续
+    @Scheduled(fixedDelayString = "${app.document-backfill.retry-interval-ms}")
+    public void backfill() {
+        if (finished) {
+            return;
+        }
+        int total = 0;
+        while (true) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                    "SELECT id, content FROM documents WHERE id > ? AND (snippet IS NULL OR plain_text IS NULL) " +
+                    "ORDER BY id LIMIT ?",
+                    lastId, BATCH_SIZE);
+            if (rows.isEmpty()) {
+                finished = true;
+                break;
+            }
+            List<Object[]> args = new ArrayList<>();
+            for (Map<String, Object> row : rows) {
+                String plainText = ContentText.toPlainText((String) row.get("content"));
+                args.add(new Object[]{plainText, ContentText.plainSnippet(plainText), row.get("id")});
+            }
+            jdbcTemplate.batchUpdate("UPDATE documents SET plain_text = ?, snippet = ? WHERE id = ?", args);
+            total += rows.size();
+            lastId = ((Number) rows.get(rows.size() - 1).get("id")).longValue();
+        }
+        if (total > 0) {
+            log.info("已为{}个文档生成纯文本和摘要", total);
+        }
+    }
+}
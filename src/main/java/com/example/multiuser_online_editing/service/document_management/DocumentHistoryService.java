@@ -0,0 +1,94 @@
+package com.example.multiuser_online_editing.service.document_management;
+
+import com.example.multiuser_online_editing.entity.document_management.DocumentOperation;
+import com.example.multiuser_online_editing.entity.document_management.DocumentSnapshot;
+import com.example.multiuser_online_editing.repository.document_management.DocumentOperationRepository;
+import com.example.multiuser_online_editing.repository.document_management.DocumentSnapshotRepository;
+import com.example.multiuser_online_editing.service.collaboration.AppliedOperation;
+import com.example.multiuser_online_editing.service.collaboration.DocumentBufferService;
+import com.example.multiuser_online_editing.service.collaboration.TextOperation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 文档版本历史
+ * 历史由快照和操作日志组成（由DocumentBufferService写入），任意版本都可以从不晚于它的最近快照开始回放操作得到
+ */
+@Service
+@Transactional
+public class DocumentHistoryService {
+
+    @Autowired
+    private DocumentSnapshotRepository documentSnapshotRepository;
+
+    @Autowired
+    private DocumentOperationRepository documentOperationRepository;
+
+    @Autowired
+    private DocumentBufferService documentBufferService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * 重建文档在指定版本的内容，只读：不写回缓冲区，也不加载缓冲区
+     * 缓冲区中尚未写入日志的操作直接从内存读取，并且先于数据库读取，期间被写回的操作在数据库中也能读到；
+     * 使用新的只读事务，保证能读到刚写回的操作日志（调用方事务的一致性读视图可能建立在写回之前）
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public String rebuild(Long documentId, long version) {
+        Map<Long, TextOperation> operations = new HashMap<>(); // 版本号 -> 得到该版本的操作
+        List<AppliedOperation> unpersisted = documentBufferService.peek(documentId,
+                buffer -> new ArrayList<>(buffer.getUnpersisted()));
+        if (unpersisted != null) {
+            for (AppliedOperation op : unpersisted) {
+                if (op.getVersion() <= version) {
+                    operations.put(op.getVersion(), op.getOperation());
+                }
+            }
+        }
+
+        DocumentSnapshot snapshot = documentSnapshotRepository
+                .findTopByDocumentIdAndVersionLessThanEqualOrderByVersionDesc(documentId, version)
+                .orElseThrow(() -> new RuntimeException("该版本的历史记录不存在或已被清理"));
+        for (DocumentOperation operation : documentOperationRepository
+                .findByDocumentIdAndVersionBetweenOrderByVersionAsc(documentId, snapshot.getVersion() + 1, version)) {
+            operations.putIfAbsent(operation.getVersion(), parse(operation.getOperation()));
+        }
+
+        String content = snapshot.getContent() == null ? "" : snapshot.getContent();
+        for (long v = snapshot.getVersion() + 1; v <= version; ++v) {
+            TextOperation operation = operations.get(v);
+            if (operation == null) {
+                throw new RuntimeException("该版本的历史记录不存在或已被清理");
+            }
+            content = operation.apply(content);
+        }
+        return content;
+    }
+
+    /**
+     * 删除文档的全部历史（文档被永久删除时）
+     */
+    public void deleteHistory(Long documentId) {
+        documentOperationRepository.deleteByDocumentId(documentId);
+        documentSnapshotRepository.deleteByDocumentId(documentId);
+    }
+
+    private TextOperation parse(String json) {
+        try {
+            return TextOperation.fromJson(objectMapper.readValue(json, List.class));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("操作日志已损坏", e);
+        }
+    }
+}
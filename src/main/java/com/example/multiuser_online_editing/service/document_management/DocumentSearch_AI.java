@@ -1,242 +1,236 @@
 package com.example.multiuser_online_editing.service.document_management;
 
-import com.example.multiuser_online_editing.entity.document_management.Document;
-
-import java.util.List;
-import java.util.ArrayList;
-import java.util.Set;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.HashMap;
-import java.util.stream.Collectors;
-
-import com.huaban.analysis.jieba.JiebaSegmenter; // 中文分词器
-import com.huaban.analysis.jieba.SegToken;
-
-public class DocumentSearch_AI { // 基于TF-IDF和余弦相似度的智能搜索
-    private static JiebaSegmenter segmenter = new JiebaSegmenter(); // 中文分词器
-
-    public static List<Document> advancedSearch_AI(
-            String content, List<Document> accessibleDocuments
-            // content为用户键入的搜索内容，accessibleDocuments为可供搜索的文档
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+public class DocumentSearch_AI { // 基于BM25的智能搜索，词频和文档长度取自倒排索引（见SearchIndexService）
+
+    private static final int MIN_CHUNK_SIZE = 1024; // 并行评分时每个分块至少包含的文档数
+
+    /**
+     * 候选文档（至少包含一个搜索词的文档）编号为0..n-1，documentLengths[i]为第i篇文档的词数，recency[i]为第i篇文档按更新时间倒序的名次；
+     * postingDocuments[t]和postingFrequencies[t]为第t个搜索词的倒排列表（文档编号按升序排列，以及对应的词频），
+     * queryFrequencies[t]为第t个搜索词在搜索内容中的出现次数
+     * totalDocuments、averageLength和documentFrequencies[t]（包含第t个搜索词的文档数）是整个索引的统计量，用于计算IDF和长度归一化
+     * pool不为null时把文档按编号分块，在pool中并行评分，每块各自选出前limit篇后再合并
+     * 返回得分最高的至多limit篇文档的编号，按得分从高到低排列，得分相同时更新时间较近的文档在前
+     */
+    public static int[] advancedSearch_AI(
+            int[] documentLengths, int[] recency,
+            int[][] postingDocuments, int[][] postingFrequencies, int[] queryFrequencies,
+            long totalDocuments, double averageLength, int[] documentFrequencies,
+            double k1, double b, int limit, ForkJoinPool pool
+            // k1控制词频的饱和速度，b控制文档长度归一化的程度
     ) {
-        if (accessibleDocuments.isEmpty()) {
-            return new ArrayList<>();
-        }
-
-        // 文本预处理
-        List<String> searchTerms = preprocessText(content);
-
-        if (searchTerms.isEmpty()) {
-            // 如果没有有效搜索词，返回最近访问的文档
-            return accessibleDocuments.stream()
-                    .limit(10)
-                    .collect(Collectors.toList());
-        }
-
-        // 计算TF-IDF并排序
-        List<DocumentScore> scoredDocuments = calculateDocumentScores(accessibleDocuments, searchTerms, content.toLowerCase());
-
-        return scoredDocuments.stream()
-                .sorted((d1, d2) -> Double.compare(d2.score, d1.score))
-                .limit(10)
-                .map(docScore -> docScore.document)
-                .collect(Collectors.toList());
-    }
-
-    private static List<String> preprocessText(String text) {
-        if (text == null || text.trim().isEmpty()) { // trim方法为移除字符串两端的空白字符
-            return new ArrayList<>();
+        int candidates = documentLengths.length;
+        if (candidates == 0 || limit <= 0) {
+            return new int[0];
         }
 
-        // 转换为小写
-        String lowerText = text.toLowerCase();
-
-        // 移除HTML标签（针对富文本内容）
-        String cleanText = lowerText.replaceAll("<[^>]+>", " ");
-
-        // 分词
-        List<SegToken> segTokens = segmenter.process(cleanText, JiebaSegmenter.SegMode.SEARCH);
-        List<String> words = new ArrayList<>();
-        for (SegToken segToken: segTokens) {
-            words.add(segToken.word);
+        averageLength = Math.max(averageLength, 1);
+        double[] weights = new double[postingDocuments.length];
+        for (int t = 0; t < postingDocuments.length; ++t) {
+            weights[t] = idf(Math.max(totalDocuments, documentFrequencies[t]), documentFrequencies[t]) * queryFrequencies[t];
         }
 
-        // 停用词过滤
-        List<String> terms = new ArrayList<>();
-        Set<String> stopWords = getStopWords();
-
-        for (String word: words) {
-            String cleanWord = word.replaceAll("[^a-zA-Z0-9\\u4e00-\\u9fa5]", "");
-            // \u4e00-\u9fa5是常用汉字的unicode码
-
-            if (cleanWord.length() > 1 && !stopWords.contains(cleanWord) && !isNumeric(cleanWord)) {
-                terms.add(cleanWord);
-            }
+        Scorer scorer = new Scorer(documentLengths, recency, postingDocuments, postingFrequencies, weights,
+                k1, b, averageLength, limit);
+        TopDocuments top;
+        if (pool == null) {
+            top = scorer.score(0, candidates);
+        } else {
+            int chunkSize = Math.max(MIN_CHUNK_SIZE, candidates / (pool.getParallelism() * 4) + 1);
+            top = pool.invoke(new ScoreTask(scorer, 0, candidates, chunkSize));
         }
-
-        // 去重处理
-        terms = new ArrayList<>(new HashSet<>(terms));
-
-        return terms;
-    }
-
-    private static Set<String> getStopWords() {
-        return Set.of("the", "a", "an", "and", "or", "but", "in", "on", "at", "to", "for",
-                "of", "with", "by", "is", "are", "was", "were", "be", "been", "being",
-                "this", "that", "these", "those", "i", "you", "he", "she", "it", "we", "they",
-                "的", "了", "在", "是", "我", "有", "和", "就", "不", "人", "都", "一", "一个",
-                "上", "也", "很", "到", "说", "要", "去", "你", "会", "着", "没有", "看", "好",
-                "自己", "这", "那", "他", "她", "它", "我们", "你们", "他们");
+        return top.documents;
     }
 
-    private static boolean isNumeric(String str) {
-        return str.matches("[0-9]+(.[0-9]*)?");
+    // 平滑IDF，包含该词的文档越少权重越高，且始终为正数
+    private static double idf(long totalDocuments, int documentsWithTerm) {
+        return Math.log(1 + (totalDocuments - documentsWithTerm + 0.5) / (documentsWithTerm + 0.5));
     }
 
-    private static class DocumentScore {
-        Document document;
-        double score;
+    // 得分最高的若干篇文档及其得分，按得分从高到低排列
+    private static class TopDocuments {
+        final int[] documents;
+        final double[] scores;
 
-        DocumentScore(Document document, double score) {
-            this.document = document;
-            this.score = score;
+        TopDocuments(int[] documents, double[] scores) {
+            this.documents = documents;
+            this.scores = scores;
         }
     }
 
-    private static List<DocumentScore> calculateDocumentScores(List<Document> documents, List<String> searchTerms, String searchContent) {
-        // 构建文档-词频矩阵
-        Map<Document, Map<String, Double>> documentVectors = new HashMap<>();
-        Map<String, Double> idfMap = calculateIDF(documents, searchTerms);
-
-        // 为每个文档计算TF-IDF向量
-        for (Document doc: documents) {
-            Map<String, Double> tfidfVector = calculateTFIDFVector(doc, searchTerms, idfMap);
-            documentVectors.put(doc, tfidfVector);
-        }
-
-        // 计算搜索查询的TF-IDF向量
-        Map<String, Double> queryVector = calculateQueryVector(searchContent, searchTerms, idfMap);
-
-        // 计算余弦相似度
-        List<DocumentScore> scoredDocuments = new ArrayList<>();
-        for (Document doc : documents) {
-            double similarity = calculateCosineSimilarity(queryVector, documentVectors.get(doc));
-            scoredDocuments.add(new DocumentScore(doc, similarity));
-        }
-
-        return scoredDocuments;
-    }
-
-    // 计算逆文档频率
-    private static Map<String, Double> calculateIDF(List<Document> documents, List<String> terms) {
-        Map<String, Double> idfMap = new HashMap<>();
-        int totalDocuments = documents.size();
-
-        for (String term: terms) {
-            long documentsWithTerm = 0;
-            for (Document document: documents) {
-                String content = (document.getTitle() + " " + document.getContent()).toLowerCase();
-                if (content.contains(term))
-                    ++documentsWithTerm;
+    private static class Scorer {
+        final int[] documentLengths;
+        final int[] recency;
+        final int[][] postingDocuments;
+        final int[][] postingFrequencies;
+        final double[] weights; // 每个搜索词的IDF乘以其在搜索内容中的出现次数
+        final double k1;
+        final double b;
+        final double averageLength;
+        final int limit;
+
+        Scorer(int[] documentLengths, int[] recency, int[][] postingDocuments, int[][] postingFrequencies,
+               double[] weights, double k1, double b, double averageLength, int limit) {
+            this.documentLengths = documentLengths;
+            this.recency = recency;
+            this.postingDocuments = postingDocuments;
+            this.postingFrequencies = postingFrequencies;
+            this.weights = weights;
+            this.k1 = k1;
+            this.b = b;
+            this.averageLength = averageLength;
+            this.limit = limit;
+        }
+
+        // 为编号在[from, to)中的文档评分，返回其中的前limit篇
+        TopDocuments score(int from, int to) {
+            // 只有出现在倒排列表中的文档才有得分，candidates记录这些文档的编号
+            double[] scores = new double[to - from];
+            int[] candidates = new int[to - from];
+            int candidateCount = 0;
+
+            for (int t = 0; t < postingDocuments.length; ++t) {
+                int[] documents = postingDocuments[t];
+                int[] frequencies = postingFrequencies[t];
+                int end = lowerBound(documents, to);
+
+                for (int i = lowerBound(documents, from); i < end; ++i) {
+                    int d = documents[i];
+                    double frequency = frequencies[i];
+                    double norm = k1 * (1 - b + b * documentLengths[d] / averageLength);
+                    if (scores[d - from] == 0) {
+                        candidates[candidateCount++] = d;
+                    }
+                    scores[d - from] += weights[t] * frequency * (k1 + 1) / (frequency + norm);
+                }
             }
 
-            // 平滑IDF计算，避免除零
-            double idf = Math.log((double) totalDocuments / ((double) documentsWithTerm + 1e-5)) + 1;
-            idfMap.put(term, idf);
-        }
-
-        return idfMap;
-    }
-
-    // 计算TF-IDF向量
-    private static Map<String, Double> calculateTFIDFVector(Document document, List<String> terms, Map<String, Double> idfMap) {
-        Map<String, Double> vector = new HashMap<>();
-        String content = (document.getTitle() + " " + document.getContent()).toLowerCase();
-
-        // 计算词频(TF)
-        Map<String, Integer> termFrequency = new HashMap<>();
-        int totalTerms = 0;
-
-        for (String term: terms) {
-            int count = 0;
-            int index = 0;
-            while ((index = content.indexOf(term, index)) != -1) {
-                ++count;
-                index += term.length();
+            double[] candidateScores = new double[candidateCount];
+            for (int i = 0; i < candidateCount; ++i) {
+                candidateScores[i] = scores[candidates[i] - from];
+            }
+            return topK(candidates, candidateScores, candidateCount);
+        }
+
+        // 合并两个分块的结果
+        TopDocuments merge(TopDocuments first, TopDocuments second) {
+            int count = first.documents.length + second.documents.length;
+            int[] documents = new int[count];
+            double[] scores = new double[count];
+            System.arraycopy(first.documents, 0, documents, 0, first.documents.length);
+            System.arraycopy(second.documents, 0, documents, first.documents.length, second.documents.length);
+            System.arraycopy(first.scores, 0, scores, 0, first.scores.length);
+            System.arraycopy(second.scores, 0, scores, first.scores.length, second.scores.length);
+            return topK(documents, scores, count);
+        }
+
+        // 用大小为k的小顶堆选出得分最高的k篇文档，复杂度O(n log k)
+        TopDocuments topK(int[] documents, double[] scores, int count) {
+            int k = Math.min(limit, count);
+            int[] heap = new int[k]; // 堆中保存的是documents中的下标，堆顶为当前前k篇中最差的文档
+            int size = 0;
+
+            for (int i = 0; i < count; ++i) {
+                if (size < k) {
+                    heap[size] = i;
+                    siftUp(heap, size++, documents, scores);
+                } else if (better(i, heap[0], documents, scores)) {
+                    heap[0] = i;
+                    siftDown(heap, 0, size, documents, scores);
+                }
             }
 
-            termFrequency.put(term, count);
-            totalTerms += count;
+            // 依次取出堆顶（最差的文档）从后往前填入结果
+            int[] topDocuments = new int[k];
+            double[] topScores = new double[k];
+            for (int i = k - 1; i >= 0; --i) {
+                topDocuments[i] = documents[heap[0]];
+                topScores[i] = scores[heap[0]];
+                heap[0] = heap[--size];
+                siftDown(heap, 0, size, documents, scores);
+            }
+            return new TopDocuments(topDocuments, topScores);
         }
 
-        // 计算TF-IDF
-        for (String term: terms) {
-            int freq = termFrequency.getOrDefault(term, 0);
-            double tf = totalTerms > 0 ? (double) freq / totalTerms : 0;
-            double idf = idfMap.getOrDefault(term, 1.0);
-            double tfidf = tf * idf;
-            vector.put(term, tfidf);
+        boolean better(int i, int j, int[] documents, double[] scores) {
+            return scores[i] > scores[j] || (scores[i] == scores[j] && recency[documents[i]] < recency[documents[j]]);
         }
 
-        return vector;
-    }
-
-    // 计算查询向量
-    private static Map<String, Double> calculateQueryVector(String searchContent, List<String> searchTerms, Map<String, Double> idfMap) {
-        Map<String, Double> vector = new HashMap<>();
-
-        // 计算词频(TF)
-        Map<String, Integer> termFrequency = new HashMap<>();
-        int totalTerms = 0;
-
-        for (String term: searchTerms) {
-            int count = 0;
-            int index = 0;
-            while ((index = searchContent.indexOf(term, index)) != -1) {
-                ++count;
-                index += term.length();
+        void siftUp(int[] heap, int i, int[] documents, double[] scores) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!better(heap[parent], heap[i], documents, scores)) {
+                    break;
+                }
+                swap(heap, i, parent);
+                i = parent;
             }
-
-            termFrequency.put(term, count);
-            totalTerms += count;
         }
 
-        // 计算TF-IDF
-        for (String term: searchTerms) {
-            int freq = termFrequency.getOrDefault(term, 0);
-            double tf = totalTerms > 0 ? (double) freq / totalTerms : 0;
-            double idf = idfMap.getOrDefault(term, 1.0);
-            double tfidf = tf * idf;
-            vector.put(term, tfidf);
+        void siftDown(int[] heap, int i, int size, int[] documents, double[] scores) {
+            while (true) {
+                int worst = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && better(heap[worst], heap[left], documents, scores)) worst = left;
+                if (right < size && better(heap[worst], heap[right], documents, scores)) worst = right;
+                if (worst == i) {
+                    return;
+                }
+                swap(heap, i, worst);
+                i = worst;
+            }
         }
-
-        return vector;
     }
 
-    // 计算余弦相似度
-    private static double calculateCosineSimilarity(Map<String, Double> vector1, Map<String, Double> vector2) {
-        double dotProduct = 0.0;
-        double norm1 = 0.0;
-        double norm2 = 0.0;
-
-        // 计算点积和范数
-        for (String term : vector1.keySet()) {
-            double v1 = vector1.getOrDefault(term, 0.0);
-            double v2 = vector2.getOrDefault(term, 0.0);
-            dotProduct += v1 * v2;
-            norm1 += v1 * v1;
+    // 把文档编号范围不断二分，直到不超过chunkSize后直接评分
+    private static class ScoreTask extends RecursiveTask<TopDocuments> {
+        private final Scorer scorer;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+
+        ScoreTask(Scorer scorer, int from, int to, int chunkSize) {
+            this.scorer = scorer;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
         }
 
-        for (double value : vector2.values()) {
-            norm2 += value * value;
+        @Override
+        protected TopDocuments compute() {
+            if (to - from <= chunkSize) {
+                return scorer.score(from, to);
+            }
+            int middle = (from + to) >>> 1;
+            ScoreTask left = new ScoreTask(scorer, from, middle, chunkSize);
+            left.fork();
+            TopDocuments right = new ScoreTask(scorer, middle, to, chunkSize).compute();
+            return scorer.merge(left.join(), right);
         }
+    }
 
-        // 避免除零
-        if (norm1 == 0 || norm2 == 0) {
-            return 0.0;
+    // 升序数组中第一个不小于value的元素的下标
+    private static int lowerBound(int[] array, int value) {
+        int low = 0;
+        int high = array.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (array[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
         }
+        return low;
+    }
 
-        return dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
+    private static void swap(int[] heap, int i, int j) {
+        int temp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = temp;
     }
 }
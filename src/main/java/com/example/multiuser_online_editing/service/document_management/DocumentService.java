@@ -1,33 +1,48 @@
 package com.example.multiuser_online_editing.service.document_management;
 
 import com.example.multiuser_online_editing.entity.document_management.*;
-import com.example.multiuser_online_editing.entity.user_management.OperationLog;
 import com.example.multiuser_online_editing.entity.user_management.Role;
 import com.example.multiuser_online_editing.entity.user_management.User;
 import com.example.multiuser_online_editing.repository.document_management.DocumentRepository;
+import com.example.multiuser_online_editing.repository.document_management.DocumentSummary;
 import com.example.multiuser_online_editing.repository.document_management.FolderRepository;
+import com.example.multiuser_online_editing.repository.document_management.SearchSnippet;
 import com.example.multiuser_online_editing.repository.document_management.TagRepository;
 import com.example.multiuser_online_editing.repository.document_management.TemplateRepository;
-import com.example.multiuser_online_editing.repository.user_management.OperationLogRepository;
 import com.example.multiuser_online_editing.repository.user_management.UserRepository;
+import com.example.multiuser_online_editing.service.user_management.OperationLogService;
+import com.example.multiuser_online_editing.service.collaboration.DocumentAccessCache;
+import com.example.multiuser_online_editing.service.collaboration.DocumentBufferService;
+import com.example.multiuser_online_editing.service.collaboration.DocumentSyncService;
 import com.example.multiuser_online_editing.service.communication.NotificationService;
+import com.example.multiuser_online_editing.util.ContentText;
+import com.example.multiuser_online_editing.util.SeekCursor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 @Transactional
 public class DocumentService {
 
     private static final Logger log = LoggerFactory.getLogger(DocumentService.class);
+
+    private static final int NGRAM_TOKEN_SIZE = 2; // 与MySQL的ngram_token_size一致（默认值为2）
+    private static final int CLUSTERING_BATCH_SIZE = 500; // 聚类时一次最多加载正文的文档数
+
     @Autowired
     private DocumentRepository documentRepository;
 
@@ -44,11 +59,38 @@ public class DocumentService {
     private UserRepository userRepository;
 
     @Autowired
-    private OperationLogRepository operationLogRepository;
+    private OperationLogService operationLogService;
 
     @Autowired
     private NotificationService notificationService;
 
+    @Autowired
+    private DocumentSyncService documentSyncService;
+
+    @Autowired
+    private DocumentBufferService documentBufferService;
+
+    @Autowired
+    private DocumentAccessCache documentAccessCache;
+
+    @Autowired
+    private DocumentHistoryService documentHistoryService;
+
+    @Autowired
+    private DraftService draftService;
+
+    @Autowired
+    private DocumentViewTracker documentViewTracker;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Autowired
+    private TermVectorCache termVectorCache;
+
+    @Autowired
+    private SearchResultCache searchResultCache;
+
     // 创建文档
     public Document createDocument(String title, String content, DocumentType type,
                                    Long folderId, List<String> tagNames, User owner) {
@@ -58,6 +100,8 @@ public class DocumentService {
         Document document = new Document();
         document.setTitle(title);
         document.setContent(content);
+        document.setPlainText(ContentText.toPlainText(content));
+        document.setSnippet(ContentText.plainSnippet(document.getPlainText()));
         document.setType(type);
         document.setOwner(owner);
         document.setStatus(DocumentStatus.EXISTS);
@@ -86,9 +130,11 @@ public class DocumentService {
         }
 
         Document savedDocument = documentRepository.save(document);
+        searchIndexService.scheduleReindex(savedDocument.getId());
+        searchResultCache.invalidate(savedDocument);
 
         // 记录操作日志
-        logOperation(owner.getId(), "CREATE_DOCUMENT", "DOCUMENT", savedDocument.getId(),
+        operationLogService.log(owner.getId(), "CREATE_DOCUMENT", "DOCUMENT", savedDocument.getId(),
                 "创建" + type + "文档: " + title);
 
         return savedDocument;
@@ -111,7 +157,7 @@ public class DocumentService {
         Document document = createDocument(title, template.getContent(), type, folderId, tagNames, owner);
 
         // 记录操作日志
-        logOperation(owner.getId(), "CREATE_DOCUMENT_FROM_TEMPLATE", "DOCUMENT", document.getId(),
+        operationLogService.log(owner.getId(), "CREATE_DOCUMENT_FROM_TEMPLATE", "DOCUMENT", document.getId(),
                 "使用模板创建文档: " + title + ", 模板: " + template.getName());
 
         return document;
@@ -133,39 +179,31 @@ public class DocumentService {
 
         if (title != null) document.setTitle(title);
         if (content != null) {
-            document.setContent(content);
+            // 内容以差异操作的形式写入热文档缓冲区（同时广播给正在协作的用户），由缓冲区批量写回数据库
+            documentSyncService.applyContent(documentId, content, user.getId());
             // 清空自动保存中的内容
-            document.setAutoSaveContent(null);
-            document.setAutoSaveTime(null);
+            draftService.discard(documentId, user.getId());
         }
-        document.setVersion(document.getVersion() + 1);
 
         Document updatedDocument = documentRepository.save(document);
+        documentBufferService.overlay(updatedDocument);
+        searchIndexService.scheduleReindex(documentId);
+        searchResultCache.invalidate(document);
 
         // 记录操作日志
-        logOperation(user.getId(), "UPDATE_DOCUMENT", "DOCUMENT", documentId,
+        operationLogService.log(user.getId(), "UPDATE_DOCUMENT", "DOCUMENT", documentId,
                 "更新文档: " + document.getTitle());
 
         return updatedDocument;
     }
 
-    // 自动保存
-    public void autoSaveDocument(Long documentId, String content, User user) {
+    // 自动保存（草稿先写入内存，由DraftService定时批量写入数据库）
+    // 客户端可以只提交相对于baseVersion的差异操作，也可以提交完整内容
+    public void autoSaveDocument(Long documentId, Long baseVersion, List<Object> operation, String content, User user) {
         if (user.getRole() == Role.VIEWER)
             throw new RuntimeException("您当前的角色为查看者，请向系统管理员申请升级为编辑者，并在申请通过后，再进行文档编辑");
 
-        Document document = documentRepository.findById(documentId)
-                .orElseThrow(() -> new RuntimeException("文档不存在"));
-
-        // 检查权限
-        if (!document.getOwner().getId().equals(user.getId()) &&
-                document.getCollaborators().stream().noneMatch(c -> c.getId().equals(user.getId()))) {
-            throw new RuntimeException("无权编辑此文档");
-        }
-
-        document.setAutoSaveContent(content);
-        document.setAutoSaveTime(LocalDateTime.now());
-        documentRepository.save(document);
+        draftService.saveDraft(documentId, user.getId(), baseVersion, operation, content);
     }
 
     // 恢复自动保存内容
@@ -182,15 +220,19 @@ public class DocumentService {
             throw new RuntimeException("无权访问此文档");
         }
 
-        if (document.getAutoSaveContent() == null) {
+        DocumentDraft draft = draftService.getDraft(documentId, user.getId());
+        if (draft != null && !draft.isRecoverable()) {
+            throw new RuntimeException("自动保存的草稿已无法恢复");
+        }
+        if (draft == null || draft.getContent() == null) {
             throw new RuntimeException("没有自动保存的内容");
         }
 
-        return document.getAutoSaveContent();
+        return draft.getContent();
     }
 
     // 高级搜索
-    public Page<Document> advancedSearch_isOwner(String title, String content,
+    public Page<DocumentSummary> advancedSearch_isOwner(String title, String content,
                                          LocalDateTime startDate, LocalDateTime endDate,
                                          User currentUser, String tagName, Pageable pageable) {
 
@@ -200,31 +242,98 @@ public class DocumentService {
 //        System.out.println("startDate: " + startDate);
 //        System.out.println("endDate: " + endDate);
 
-        return documentRepository.advancedSearch_isOwner(title, content, startDate, endDate,
-                currentUser, tagName, pageable);
+        Page<DocumentSummary> summaries = documentRepository.advancedSearch_isOwner(likeTerm(title), likeTerm(content),
+                fullTextTerm(title), fullTextTerm(content),
+                startDate, endDate, currentUser, tagName, pageable);
+        completeSummaries(summaries.getContent());
+        return summaries;
     }
 
-    public Page<Document> advancedSearch_isCollaborator(String title, String content, String ownerUsername,
+    public Page<DocumentSummary> advancedSearch_isCollaborator(String title, String content, String ownerUsername,
                                                  LocalDateTime startDate, LocalDateTime endDate,
                                                  User currentUser, String tagName, Pageable pageable) {
+        User owner = findOwner(ownerUsername);
+        Page<DocumentSummary> summaries = documentRepository.advancedSearch_isCollaborator(likeTerm(title), likeTerm(content),
+                fullTextTerm(title), fullTextTerm(content), owner,
+                startDate, endDate, currentUser, tagName, pageable);
+        completeSummaries(summaries.getContent());
+        return summaries;
+    }
 
-        User owner = userRepository.findByUsername(ownerUsername)
-                .orElseThrow(() -> new RuntimeException("文档所有者用户名不存在"));
+    // 高级搜索（键集分页）
+    public DocumentSummarySlice seekAdvancedSearch_isOwner(String title, String content,
+                                                          LocalDateTime startDate, LocalDateTime endDate,
+                                                          User currentUser, String tagName, String cursor, int size) {
+        SeekCursor seek = SeekCursor.decode(cursor);
+        return toSlice(documentRepository.seekAdvancedSearch_isOwner(likeTerm(title), likeTerm(content),
+                fullTextTerm(title), fullTextTerm(content), startDate, endDate,
+                currentUser, tagName, seek.getUpdatedAt(), seek.getId(), seekLimit(size)), size);
+    }
+
+    public DocumentSummarySlice seekAdvancedSearch_isCollaborator(String title, String content, String ownerUsername,
+                                                                 LocalDateTime startDate, LocalDateTime endDate,
+                                                                 User currentUser, String tagName, String cursor, int size) {
+        User owner = findOwner(ownerUsername);
+        SeekCursor seek = SeekCursor.decode(cursor);
+        return toSlice(documentRepository.seekAdvancedSearch_isCollaborator(likeTerm(title), likeTerm(content),
+                fullTextTerm(title), fullTextTerm(content), owner, startDate, endDate,
+                currentUser, tagName, seek.getUpdatedAt(), seek.getId(), seekLimit(size)), size);
+    }
 
-        return documentRepository.advancedSearch_isCollaborator(title, content, owner, startDate, endDate, currentUser,
-                tagName, pageable);
+    // 协作文档搜索的所有者条件，两种分页方式共用：未指定所有者时不按所有者过滤
+    private User findOwner(String ownerUsername) {
+        if (ownerUsername == null || ownerUsername.isBlank())
+            return null;
+        return userRepository.findByUsername(ownerUsername)
+                .orElseThrow(() -> new RuntimeException("文档所有者用户名不存在"));
     }
 
     // AI搜索与用户相关的所有文档
-    public List<Document> advancedSearch_AI(String content, Long userId) {
-        List<Document> accessibleDocuments = documentRepository.findAccessibleDocuments(userId);
-        return DocumentSearch_AI.advancedSearch_AI(content, accessibleDocuments);
+    public List<DocumentSummary> advancedSearch_AI(String content, Long userId, int size) {
+        if (size <= 0)
+            throw new RuntimeException("返回数量必须大于0");
+        List<Long> ids = searchIndexService.search(content, userId, size);
+        List<DocumentSummary> summaries = summarizeIds(ids);
+        Map<Long, List<SearchSnippet>> highlights = searchIndexService.highlight(content, ids);
+        for (DocumentSummary summary : summaries)
+            summary.setHighlights(highlights.getOrDefault(summary.getId(), new ArrayList<>()));
+        return summaries;
     }
 
     // 聚类算法对文档进行智能分类
+    // 只查询文档的ID、版本号和标题，词频向量缓存未命中的文档再分批加载正文的纯文本
     public List<DocumentClass> documentClustering(Long userId, int numOfClusters) {
-        List<Document> accessibleDocuments = documentRepository.findAccessibleDocuments(userId);
-        return Classification_AI.classification_AI(accessibleDocuments, numOfClusters);
+        List<Object[]> rows = documentRepository.findAccessibleVersions(userId);
+        List<Long> ids = new ArrayList<>();
+        List<TermVectorCache.TermVector> termVectors = new ArrayList<>();
+        Map<Long, Integer> misses = new HashMap<>(); // 文档ID -> 在ids中的下标
+        for (Object[] row : rows) {
+            Long id = (Long) row[0];
+            TermVectorCache.TermVector cached = termVectorCache.get(id, (Long) row[1], (String) row[2]);
+            if (cached == null)
+                misses.put(id, ids.size());
+            ids.add(id);
+            termVectors.add(cached);
+        }
+
+        List<Long> missIds = new ArrayList<>(misses.keySet());
+        for (int i = 0; i < missIds.size(); i += CLUSTERING_BATCH_SIZE) {
+            for (Object[] text : documentRepository.findPlainTextsByIdIn(
+                    missIds.subList(i, Math.min(i + CLUSTERING_BATCH_SIZE, missIds.size())))) {
+                int index = misses.remove((Long) text[0]);
+                // 补齐纯文本列之前的旧文档临时从HTML提取
+                String plainText = text[1] != null ? (String) text[1] : ContentText.toPlainText((String) text[2]);
+                Object[] row = rows.get(index);
+                termVectors.set(index, termVectorCache.put((Long) row[0], (Long) row[1], (String) row[2], plainText));
+            }
+        }
+        // 查询期间被永久删除的文档
+        for (int index : misses.values()) {
+            Object[] row = rows.get(index);
+            termVectors.set(index, termVectorCache.put((Long) row[0], (Long) row[1], (String) row[2], ""));
+        }
+
+        return Classification_AI.classification_AI(ids, termVectors, numOfClusters);
     }
 
     // 添加协作者
@@ -250,9 +359,11 @@ public class DocumentService {
 
         document.getCollaborators().add(collaborator);
         Document updatedDocument = documentRepository.save(document);
+        documentAccessCache.invalidate(documentId);
+        searchResultCache.invalidateUser(userId);
 
         // 记录操作日志
-        logOperation(currentUser.getId(), "ADD_COLLABORATOR", "DOCUMENT", documentId,
+        operationLogService.log(currentUser.getId(), "ADD_COLLABORATOR", "DOCUMENT", documentId,
                 "添加协作者: " + collaborator.getUsername());
 
         String message = currentUser.getUsername() + " 添加你为文档 \"" + document.getTitle() + "\" 的协作者";
@@ -273,13 +384,17 @@ public class DocumentService {
 
         document.setStatus(DocumentStatus.DELETED);
         documentRepository.save(document);
+        documentAccessCache.invalidate(documentId);
+        searchIndexService.scheduleReindex(documentId);
+        searchResultCache.invalidate(document);
 
         // 记录操作日志
-        logOperation(user.getId(), "DELETE_DOCUMENT", "DOCUMENT", documentId,
+        operationLogService.log(user.getId(), "DELETE_DOCUMENT", "DOCUMENT", documentId,
                 "删除文档: " + document.getTitle());
     }
 
-    // 获取文档详情
+    // 获取文档详情（只读，查看次数由DocumentViewTracker在内存中汇总）
+    @Transactional(readOnly = true)
     public Document getDocumentDetail(Long documentId, User user) {
         Document document = documentRepository.findByIdAndStatusNot(documentId, DocumentStatus.DELETED)
                 .orElseThrow(() -> new RuntimeException("文档不存在"));
@@ -292,15 +407,27 @@ public class DocumentService {
             throw new RuntimeException("无权查看此文档");
         }
 
-        documentRepository.save(document);
-
-        // 记录操作日志
-        logOperation(user.getId(), "VIEW_DOCUMENT", "DOCUMENT", documentId,
-                "查看文档: " + document.getTitle());
+        documentBufferService.overlay(document);
+        documentViewTracker.record(documentId, user.getId());
 
         return document;
     }
 
+    // 获取文档的某个历史版本
+    public String getDocumentVersion(Long documentId, Long version, User user) {
+        Document document = documentRepository.findByIdAndStatusNot(documentId, DocumentStatus.DELETED)
+                .orElseThrow(() -> new RuntimeException("文档不存在"));
+
+        boolean hasPermission = document.getOwner().getId().equals(user.getId()) ||
+                document.getCollaborators().stream().anyMatch(c -> c.getId().equals(user.getId()));
+
+        if (!hasPermission) {
+            throw new RuntimeException("无权查看此文档");
+        }
+
+        return documentHistoryService.rebuild(documentId, version);
+    }
+
     // 移除协作者
     public Document removeCollaborator(Long documentId, Long userId, User currentUser) {
         Document document = documentRepository.findById(documentId)
@@ -325,9 +452,11 @@ public class DocumentService {
         // 移除协作者
         document.getCollaborators().removeIf(c -> c.getId().equals(userId));
         Document updatedDocument = documentRepository.save(document);
+        documentAccessCache.invalidate(documentId);
+        searchResultCache.invalidateUser(userId);
 
         // 记录操作日志
-        logOperation(currentUser.getId(), "REMOVE_COLLABORATOR", "DOCUMENT", documentId,
+        operationLogService.log(currentUser.getId(), "REMOVE_COLLABORATOR", "DOCUMENT", documentId,
                 "移除协作者: " + collaborator.getUsername());
 
         String message = currentUser.getUsername() + " 将你从文档 \"" + document.getTitle() + "\" 的协作者中移除";
@@ -337,17 +466,105 @@ public class DocumentService {
     }
 
     // 获取根目录下的文档
-    public List<Document> getRootDocuments(User user) {
-        return documentRepository.findByOwnerAndFolderIsNullAndStatusNot(user, DocumentStatus.DELETED);
+    public List<DocumentSummary> getRootDocuments(User user) {
+        return completeSummaries(documentRepository.findRootSummaries(user));
     }
 
-    // 获取根目录下的文档（分页）
-    public Page<Document> getRootDocuments(User user, Pageable pageable) {
-        return documentRepository.findByOwnerAndFolderIsNullAndStatusNotOrderByUpdatedAtDesc(user, DocumentStatus.DELETED, pageable);
+    // 获取根目录下的文档（键集分页）
+    public DocumentSummarySlice seekRootDocuments(User user, String cursor, int size) {
+        SeekCursor seek = SeekCursor.decode(cursor);
+        return toSlice(documentRepository.seekRootSummaries(user, seek.getUpdatedAt(), seek.getId(), seekLimit(size)),
+                size);
     }
 
-    public List<Document> getDeletedDocuments(User user) {
-        return documentRepository.findByOwnerAndStatus(user, DocumentStatus.DELETED);
+    // 标题、正文搜索词至少有NGRAM_TOKEN_SIZE个字符时使用全文索引
+    private static String fullTextTerm(String text) {
+        String term = searchTerm(text);
+        return term != null && term.length() >= NGRAM_TOKEN_SIZE ? term : null;
+    }
+
+    // 无法使用全文索引的搜索词仍用LIKE匹配，通配符%、_和转义符按普通字符匹配（MySQL的LIKE默认以反斜杠转义）
+    private static String likeTerm(String text) {
+        String term = searchTerm(text);
+        if (term == null || term.length() >= NGRAM_TOKEN_SIZE)
+            return null;
+        return term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    // 两种匹配方式共用的搜索词处理：去掉双引号（全文检索按短语匹配，用双引号包围）和首尾空白，为空时不按该条件过滤
+    private static String searchTerm(String text) {
+        if (text == null)
+            return null;
+        String term = text.replace('"', ' ').trim();
+        return term.isEmpty() ? null : term;
+    }
+
+    // 多取一条用于判断是否还有下一页
+    private Pageable seekLimit(int size) {
+        if (size <= 0)
+            throw new RuntimeException("每页数量必须大于0");
+        return PageRequest.of(0, size + 1);
+    }
+
+    private DocumentSummarySlice toSlice(List<DocumentSummary> rows, int size) {
+        String nextCursor = null;
+        if (rows.size() > size) {
+            rows = new ArrayList<>(rows.subList(0, size));
+            DocumentSummary last = rows.get(size - 1);
+            nextCursor = new SeekCursor(last.getUpdatedAt(), last.getId()).encode();
+        }
+        return new DocumentSummarySlice(completeSummaries(rows), nextCursor);
+    }
+
+    public List<DocumentSummary> getDeletedDocuments(User user) {
+        return completeSummaries(documentRepository.findDeletedSummaries(user));
+    }
+
+    // 按文档ID加载摘要，保持ID的顺序
+    public List<DocumentSummary> summarizeIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<Long, DocumentSummary> summariesById = new HashMap<>();
+        for (DocumentSummary summary : documentRepository.findSummariesByIdIn(ids))
+            summariesById.put(summary.getId(), summary);
+
+        List<DocumentSummary> summaries = new ArrayList<>();
+        for (Long id : ids) {
+            DocumentSummary summary = summariesById.get(id);
+            if (summary != null)
+                summaries.add(summary);
+        }
+        return completeSummaries(summaries);
+    }
+
+    // 批量补充摘要的标签和文件夹路径（每种各一次查询）
+    public List<DocumentSummary> completeSummaries(List<DocumentSummary> summaries) {
+        if (summaries.isEmpty()) {
+            return summaries;
+        }
+        Set<Long> ids = new HashSet<>();
+        Set<Long> folderIds = new HashSet<>();
+        for (DocumentSummary summary : summaries) {
+            ids.add(summary.getId());
+            if (summary.getFolderId() != null)
+                folderIds.add(summary.getFolderId());
+        }
+
+        Map<Long, List<String>> tagsById = new HashMap<>();
+        for (Object[] row : documentRepository.findTagNamesByDocumentIds(ids))
+            tagsById.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add((String) row[1]);
+
+        Map<Long, String> foldersById = new HashMap<>();
+        for (Folder folder : folderRepository.findAllById(folderIds))
+            foldersById.put(folder.getId(), folder.toString());
+
+        for (DocumentSummary summary : summaries) {
+            summary.setTags(tagsById.getOrDefault(summary.getId(), new ArrayList<>()));
+            summary.setFolder(summary.getFolderId() == null ? "根目录" : foldersById.get(summary.getFolderId()));
+        }
+        return summaries;
     }
 
     public void deleteDocumentForever(Long documentId, User user) {
@@ -358,8 +575,15 @@ public class DocumentService {
             throw new RuntimeException("未放入回收站的文档不能永久删除");
 
         documentRepository.delete(document);
-
-        logOperation(user.getId(), "DELETE_DOCUMENT_FOREVER", "DOCUMENT", documentId,
+        documentBufferService.discard(documentId);
+        documentHistoryService.deleteHistory(documentId);
+        draftService.discardAll(documentId);
+        documentViewTracker.discard(documentId);
+        searchIndexService.scheduleReindex(documentId);
+        searchResultCache.invalidate(document);
+        documentAccessCache.invalidate(documentId);
+
+        operationLogService.log(user.getId(), "DELETE_DOCUMENT_FOREVER", "DOCUMENT", documentId,
                 "永久删除文档: " + document.getTitle());
     }
 
@@ -371,17 +595,11 @@ public class DocumentService {
             throw new RuntimeException("文档已存在，无需恢复");
 
         document.setStatus(DocumentStatus.EXISTS);
+        documentAccessCache.invalidate(documentId);
+        searchIndexService.scheduleReindex(documentId);
+        searchResultCache.invalidate(document);
 
-        logOperation(user.getId(), "RESTORE_DOCUMENT", "DOCUMENT", documentId,
+        operationLogService.log(user.getId(), "RESTORE_DOCUMENT", "DOCUMENT", documentId,
                 "恢复文档: " + document.getTitle());
     }
-
-    private void logOperation(Long userId, String operation, String resourceType, Long resourceId, String details) {
-        User user = userRepository.findById(userId).orElse(null);
-        if (user != null) {
-            OperationLog log = new OperationLog(user, operation, resourceType, resourceId);
-            log.setDetails(details);
-            operationLogRepository.save(log);
-        }
-    }
 }
\ No newline at end of file
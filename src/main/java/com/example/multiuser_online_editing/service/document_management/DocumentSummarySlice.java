@@ -0,0 +1,22 @@
+package com.example.multiuser_online_editing.service.document_management;
+
+import com.example.multiuser_online_editing.repository.document_management.DocumentSummary;
+
+import java.util.List;
+
+/**
+ * 键集分页的一页结果，nextCursor为空表示没有下一页
+ */
+public class DocumentSummarySlice {
+    private final List<DocumentSummary> documents;
+    private final String nextCursor;
+
+    public DocumentSummarySlice(List<DocumentSummary> documents, String nextCursor) {
+        this.documents = documents;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<DocumentSummary> getDocuments() { return documents; }
+    public String getNextCursor() { return nextCursor; }
+    public boolean hasMore() { return nextCursor != null; }
+}
@@ -0,0 +1,137 @@
+package com.example.multiuser_online_editing.service.document_management;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 文档查看统计
+ * 查看文档时只在内存中为(文档, 用户)累加计数，按固定间隔把汇总后的增量以一次JDBC批量upsert写入document_view_stats，
+ * 使查看文档的请求本身不写数据库
+ */
+@Service
+public class DocumentViewTracker {
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentViewTracker.class);
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO document_view_stats (document_id, user_id, view_count, last_viewed_at) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE view_count = view_count + VALUES(view_count), " +
+            "last_viewed_at = GREATEST(COALESCE(last_viewed_at, VALUES(last_viewed_at)), VALUES(last_viewed_at))";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Map<ViewKey, Pending> pending = new ConcurrentHashMap<>();
+
+    private final Object flushLock = new Object();
+
+    /**
+     * 记录一次查看
+     */
+    public void record(Long documentId, Long userId) {
+        long now = System.currentTimeMillis();
+        pending.compute(new ViewKey(documentId, userId), (key, views) -> {
+            if (views == null) {
+                views = new Pending();
+            }
+            ++views.count;
+            views.lastViewedAt = now;
+            return views;
+        });
+    }
+
+    /**
+     * 删除文档的查看统计（文档被永久删除时）
+     */
+    public void discard(Long documentId) {
+        synchronized (flushLock) {
+            pending.keySet().removeIf(key -> key.documentId.equals(documentId));
+            jdbcTemplate.update("DELETE FROM document_view_stats WHERE document_id = ?", documentId);
+        }
+    }
+
+    /**
+     * 定时把累计的查看次数批量写入数据库
+     */
+    @Scheduled(fixedDelayString = "${app.document-views.flush-interval-ms}")
+    public void flush() {
+        synchronized (flushLock) {
+            Map<ViewKey, Pending> drained = new HashMap<>();
+            for (ViewKey key : pending.keySet()) {
+                Pending views = pending.remove(key);
+                if (views != null) {
+                    drained.put(key, views);
+                }
+            }
+            if (drained.isEmpty()) {
+                return;
+            }
+
+            List<Object[]> batchArgs = new ArrayList<>();
+            for (Map.Entry<ViewKey, Pending> entry : drained.entrySet()) {
+                batchArgs.add(new Object[]{entry.getKey().documentId, entry.getKey().userId,
+                        entry.getValue().count, new Timestamp(entry.getValue().lastViewedAt)});
+            }
+            try {
+                jdbcTemplate.batchUpdate(UPSERT_SQL, batchArgs);
+            } catch (RuntimeException e) {
+                log.error("写入文档查看统计失败，将在下次刷新时重试", e);
+                // 把这批计数合并回去，避免丢失
+                for (Map.Entry<ViewKey, Pending> entry : drained.entrySet()) {
+                    pending.merge(entry.getKey(), entry.getValue(), (current, failed) -> {
+                        current.count += failed.count;
+                        current.lastViewedAt = Math.max(current.lastViewedAt, failed.lastViewedAt);
+                        return current;
+                    });
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private static class ViewKey {
+        private final Long documentId;
+        private final Long userId;
+
+        private ViewKey(Long documentId, Long userId) {
+            this.documentId = documentId;
+            this.userId = userId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ViewKey)) return false;
+            ViewKey other = (ViewKey) o;
+            return documentId.equals(other.documentId) && userId.equals(other.userId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(documentId, userId);
+        }
+    }
+
+    // 只在ConcurrentHashMap.compute/merge中修改，或已从map中移除后读取
+    private static class Pending {
+        private long count;
+        private long lastViewedAt;
+    }
+}
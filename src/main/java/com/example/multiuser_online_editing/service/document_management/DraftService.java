@@ -0,0 +1,349 @@
+package com.example.multiuser_online_editing.service.document_management;
+
+import com.example.multiuser_online_editing.entity.document_management.DocumentDraft;
+import com.example.multiuser_online_editing.repository.document_management.DocumentRepository;
+import com.example.multiuser_online_editing.service.collaboration.DocumentBufferService;
+import com.example.multiuser_online_editing.service.collaboration.DocumentSyncService;
+import com.example.multiuser_online_editing.service.collaboration.TextOperation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 自动保存草稿
+ * 草稿不保存完整内容，而是保存相对于文档某个版本（baseVersion）的差异操作，恢复时重建该版本的内容后应用操作。
+ * 保存时草稿总是变换到文档的当前版本，已保存草稿的基准版本之后的历史不会被清理（见DocumentBufferService.compact）
+ * 客户端的自动保存只写入内存中每个(文档, 用户)的草稿槽位，只保留最新的草稿，哈希与已保存的相同时直接跳过；
+ * 脏草稿按固定间隔以一次JDBC批量upsert写入数据库。访问权限只在槽位创建时检查一次
+ */
+@Service
+public class DraftService {
+
+    private static final Logger log = LoggerFactory.getLogger(DraftService.class);
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO document_drafts (document_id, user_id, base_version, operation, content_hash, saved_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE base_version = VALUES(base_version), " +
+            "operation = VALUES(operation), content_hash = VALUES(content_hash), saved_at = VALUES(saved_at)";
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DocumentSyncService documentSyncService;
+
+    @Autowired
+    private DocumentHistoryService documentHistoryService;
+
+    @Autowired
+    private DocumentBufferService documentBufferService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.autosave.idle-timeout-ms}")
+    private long idleTimeoutMs; // 超过该时间没有自动保存的槽位在写入后移出内存
+
+    private final ConcurrentHashMap<DraftKey, DraftSlot> slots = new ConcurrentHashMap<>();
+
+    private final Object flushLock = new Object(); // 写入与删除草稿互斥，避免已删除的草稿被重新写入
+
+    /**
+     * 保存草稿（只更新内存中的槽位）
+     * 客户端提供了基于某个版本的差异操作时，与实时同步一样把操作变换到文档的当前版本（同时检查基准版本仍然有效、
+     * 操作与基准内容的长度一致）；否则根据完整内容与文档当前内容计算差异
+     */
+    public void saveDraft(Long documentId, Long userId, Long baseVersion, List<Object> operation, String content) {
+        DraftKey key = new DraftKey(documentId, userId);
+        acquire(key); // 先检查访问权限
+
+        TextOperation draft;
+        if (baseVersion != null && operation != null) {
+            Map<String, Object> rebased;
+            try {
+                rebased = documentSyncService.rebase(documentId, baseVersion, TextOperation.fromJson(operation));
+            } catch (RuntimeException e) {
+                throw new RuntimeException("草稿与文档内容不匹配，请重新同步文档后再保存: " + e.getMessage(), e);
+            }
+            baseVersion = (Long) rebased.get("version");
+            draft = (TextOperation) rebased.get("operation");
+        } else {
+            Map<String, Object> snapshot = documentSyncService.getSnapshot(documentId);
+            baseVersion = (Long) snapshot.get("version");
+            draft = TextOperation.diff((String) snapshot.get("content"), content == null ? "" : content);
+        }
+        String json = toJson(draft);
+        String hash = hash(baseVersion + ":" + json);
+
+        while (true) {
+            DraftSlot slot = acquire(key);
+            synchronized (slot) {
+                if (slot.evicted) {
+                    continue; // 槽位刚被移除，重新加载
+                }
+                slot.lastAccessTime = System.currentTimeMillis();
+                if (hash.equals(slot.hash)) {
+                    return; // 与已保存的草稿相同
+                }
+                slot.baseVersion = baseVersion;
+                slot.operation = json;
+                slot.hash = hash;
+                slot.savedAt = LocalDateTime.now();
+                ++slot.revision;
+                return;
+            }
+        }
+    }
+
+    /**
+     * 获取用户在文档上的草稿并重建草稿内容，没有草稿（或草稿与文档内容相同）时返回null
+     * 草稿已损坏或其基准版本已无法重建时返回recoverable为false、content为null的草稿，而不是当作没有草稿
+     */
+    public DocumentDraft getDraft(Long documentId, Long userId) {
+        DocumentDraft draft = null;
+        DraftSlot slot = slots.get(new DraftKey(documentId, userId));
+        if (slot != null) {
+            synchronized (slot) {
+                if (!slot.evicted && slot.operation != null) {
+                    draft = new DocumentDraft(documentId, userId, slot.baseVersion, slot.operation, slot.savedAt);
+                }
+            }
+        }
+
+        if (draft == null) {
+            List<DocumentDraft> drafts = jdbcTemplate.query(
+                    "SELECT base_version, operation, saved_at FROM document_drafts WHERE document_id = ? AND user_id = ?",
+                    (rs, rowNum) -> new DocumentDraft(documentId, userId, rs.getLong("base_version"),
+                            rs.getString("operation"),
+                            rs.getTimestamp("saved_at") == null ? null : rs.getTimestamp("saved_at").toLocalDateTime()),
+                    documentId, userId);
+            if (drafts.isEmpty() || drafts.get(0).getOperation() == null) {
+                return null;
+            }
+            draft = drafts.get(0);
+        }
+
+        try {
+            TextOperation operation = parse(draft.getOperation());
+            if (operation.isNoop()) {
+                return null;
+            }
+            draft.setContent(operation.apply(getBaseContent(documentId, draft.getBaseVersion())));
+        } catch (RuntimeException e) {
+            log.warn("文档{}上用户{}的草稿无法恢复: {}", documentId, userId, e.getMessage());
+            draft.setRecoverable(false);
+        }
+        return draft;
+    }
+
+    // 草稿所基于版本的文档内容，只读（文档详情等读接口调用）：不加载缓冲区，不写数据库
+    // 缓冲区中就是该版本时直接取缓冲区中的内容；数据库中的文档是该版本时取数据库中的内容（内容和版本号总是一起写回）；
+    // 否则从版本历史重建
+    private String getBaseContent(Long documentId, Long baseVersion) {
+        String content = documentBufferService.peek(documentId,
+                buffer -> baseVersion.equals(buffer.getVersion()) ? buffer.getContent() : null);
+        if (content != null) {
+            return content;
+        }
+        List<String> stored = jdbcTemplate.queryForList(
+                "SELECT content FROM documents WHERE id = ? AND version = ?", String.class, documentId, baseVersion);
+        if (!stored.isEmpty()) {
+            return stored.get(0) == null ? "" : stored.get(0);
+        }
+        return documentHistoryService.rebuild(documentId, baseVersion);
+    }
+
+    /**
+     * 删除用户在文档上的草稿（文档保存后）
+     */
+    public void discard(Long documentId, Long userId) {
+        synchronized (flushLock) {
+            evict(slots.remove(new DraftKey(documentId, userId)));
+            jdbcTemplate.update("DELETE FROM document_drafts WHERE document_id = ? AND user_id = ?", documentId, userId);
+        }
+    }
+
+    /**
+     * 删除文档的所有草稿（文档被永久删除时）
+     */
+    public void discardAll(Long documentId) {
+        synchronized (flushLock) {
+            for (DraftKey key : slots.keySet()) {
+                if (key.documentId.equals(documentId)) {
+                    evict(slots.remove(key));
+                }
+            }
+            jdbcTemplate.update("DELETE FROM document_drafts WHERE document_id = ?", documentId);
+        }
+    }
+
+    /**
+     * 定时把所有脏草稿批量写入数据库，并移除空闲的槽位
+     */
+    @Scheduled(fixedDelayString = "${app.autosave.flush-interval-ms}")
+    public void flush() {
+        synchronized (flushLock) {
+            List<DraftSlot> dirty = new ArrayList<>();
+            List<Long> revisions = new ArrayList<>();
+            List<Object[]> batchArgs = new ArrayList<>();
+
+            for (DraftSlot slot : slots.values()) {
+                synchronized (slot) {
+                    if (slot.revision > slot.persistedRevision && !slot.evicted) {
+                        dirty.add(slot);
+                        revisions.add(slot.revision);
+                        batchArgs.add(new Object[]{slot.key.documentId, slot.key.userId, slot.baseVersion,
+                                slot.operation, slot.hash, Timestamp.valueOf(slot.savedAt)});
+                    }
+                }
+            }
+
+            if (!batchArgs.isEmpty()) {
+                try {
+                    jdbcTemplate.batchUpdate(UPSERT_SQL, batchArgs);
+                } catch (RuntimeException e) {
+                    log.error("写入自动保存草稿失败，将在下次刷新时重试", e);
+                    return;
+                }
+                for (int i = 0; i < dirty.size(); ++i) {
+                    DraftSlot slot = dirty.get(i);
+                    synchronized (slot) {
+                        slot.persistedRevision = Math.max(slot.persistedRevision, revisions.get(i));
+                    }
+                }
+            }
+
+            long idleBefore = System.currentTimeMillis() - idleTimeoutMs;
+            for (Map.Entry<DraftKey, DraftSlot> entry : slots.entrySet()) {
+                DraftSlot slot = entry.getValue();
+                synchronized (slot) {
+                    if (slot.revision == slot.persistedRevision && slot.lastAccessTime < idleBefore) {
+                        slots.remove(entry.getKey(), slot);
+                        slot.evicted = true;
+                    }
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    // 获取槽位，不存在时检查权限并读取已保存草稿的哈希
+    private DraftSlot acquire(DraftKey key) {
+        DraftSlot slot = slots.get(key);
+        if (slot != null) {
+            return slot;
+        }
+
+        if (!documentRepository.isAccessible(key.documentId, key.userId)) {
+            throw new RuntimeException("无权编辑此文档");
+        }
+        List<String> hashes = jdbcTemplate.queryForList(
+                "SELECT content_hash FROM document_drafts WHERE document_id = ? AND user_id = ?",
+                String.class, key.documentId, key.userId);
+
+        DraftSlot loaded = new DraftSlot(key, hashes.isEmpty() ? null : hashes.get(0));
+        DraftSlot existing = slots.putIfAbsent(key, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private void evict(DraftSlot slot) {
+        if (slot != null) {
+            synchronized (slot) {
+                slot.evicted = true;
+            }
+        }
+    }
+
+    private String toJson(TextOperation operation) {
+        try {
+            return objectMapper.writeValueAsString(operation.toJson());
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("草稿序列化失败", e);
+        }
+    }
+
+    private TextOperation parse(String json) {
+        try {
+            return TextOperation.fromJson(objectMapper.readValue(json, List.class));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("草稿已损坏", e);
+        }
+    }
+
+    private static String hash(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] bytes = digest.digest((content == null ? "" : content).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static class DraftKey {
+        private final Long documentId;
+        private final Long userId;
+
+        private DraftKey(Long documentId, Long userId) {
+            this.documentId = documentId;
+            this.userId = userId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof DraftKey)) return false;
+            DraftKey other = (DraftKey) o;
+            return documentId.equals(other.documentId) && userId.equals(other.userId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(documentId, userId);
+        }
+    }
+
+    // 所有字段的读写都在 synchronized (slot) 中进行
+    private static class DraftSlot {
+        private final DraftKey key;
+        private Long baseVersion;
+        private String operation; // 从数据库加载的槽位在收到新草稿之前为空
+        private String hash;
+        private LocalDateTime savedAt;
+        private long revision = 0;
+        private long persistedRevision = 0;
+        private long lastAccessTime = System.currentTimeMillis();
+        private boolean evicted = false;
+
+        private DraftSlot(DraftKey key, String hash) {
+            this.key = key;
+            this.hash = hash;
+        }
+    }
+}
@@ -1,15 +1,12 @@
 package com.example.multiuser_online_editing.service.document_management;
 
 import com.example.multiuser_online_editing.entity.document_management.Folder;
-import com.example.multiuser_online_editing.entity.document_management.Document;
-import com.example.multiuser_online_editing.entity.document_management.DocumentStatus;
-import com.example.multiuser_online_editing.entity.user_management.OperationLog;
 import com.example.multiuser_online_editing.entity.user_management.Role;
 import com.example.multiuser_online_editing.entity.user_management.User;
 import com.example.multiuser_online_editing.repository.document_management.DocumentRepository;
+import com.example.multiuser_online_editing.repository.document_management.DocumentSummary;
 import com.example.multiuser_online_editing.repository.document_management.FolderRepository;
-import com.example.multiuser_online_editing.repository.user_management.OperationLogRepository;
-import com.example.multiuser_online_editing.repository.user_management.UserRepository;
+import com.example.multiuser_online_editing.service.user_management.OperationLogService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -25,13 +22,13 @@ public class FolderService {
     private FolderRepository folderRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private OperationLogService operationLogService;
 
     @Autowired
-    private OperationLogRepository operationLogRepository;
+    private DocumentRepository documentRepository;
 
     @Autowired
-    private DocumentRepository documentRepository;
+    private DocumentService documentService;
 
     // 创建文件夹
     public Folder createFolder(String name, String description, Long parentId, User owner) {
@@ -59,7 +56,7 @@ public class FolderService {
         Folder savedFolder = folderRepository.save(folder);
 
         // 记录操作日志
-        logOperation(owner.getId(), "CREATE_FOLDER", "FOLDER", savedFolder.getId(),
+        operationLogService.log(owner.getId(), "CREATE_FOLDER", "FOLDER", savedFolder.getId(),
                 "创建文件夹: " + name);
 
         return savedFolder;
@@ -85,7 +82,7 @@ public class FolderService {
         Folder updatedFolder = folderRepository.save(folder);
 
         // 记录操作日志
-        logOperation(user.getId(), "UPDATE_FOLDER", "FOLDER", folderId,
+        operationLogService.log(user.getId(), "UPDATE_FOLDER", "FOLDER", folderId,
                 "更新文件夹: " + name);
 
         return updatedFolder;
@@ -108,7 +105,7 @@ public class FolderService {
         folderRepository.delete(folder);
 
         // 记录操作日志
-        logOperation(user.getId(), "DELETE_FOLDER", "FOLDER", folderId,
+        operationLogService.log(user.getId(), "DELETE_FOLDER", "FOLDER", folderId,
                 "删除文件夹: " + folder.getName());
     }
 
@@ -126,11 +123,11 @@ public class FolderService {
     }
 
     // 获取子文件列表
-    public List<Document> getSubDocuments(Long parentId, User user) {
+    public List<DocumentSummary> getSubDocuments(Long parentId, User user) {
         Folder parent = folderRepository.findByIdAndOwner(parentId, user)
                 .orElseThrow(() -> new RuntimeException("父文件夹不存在或无权访问"));
 
-        return documentRepository.findByOwnerAndFolderAndStatusNot(user, parent, DocumentStatus.DELETED);
+        return documentService.completeSummaries(documentRepository.findFolderSummaries(user, parent));
     }
 
     // 获取文件夹详情
@@ -164,7 +161,7 @@ public class FolderService {
         Folder movedFolder = folderRepository.save(folder);
 
         // 记录操作日志
-        logOperation(user.getId(), "MOVE_FOLDER", "FOLDER", folderId,
+        operationLogService.log(user.getId(), "MOVE_FOLDER", "FOLDER", folderId,
                 "移动文件夹: " + folder.getName());
 
         return movedFolder;
@@ -182,14 +179,4 @@ public class FolderService {
         }
         return false;
     }
-
-    private void logOperation(Long userId, String operation, String resourceType, Long resourceId, String details) {
-        User user = userRepository.findById(userId).orElse(null);
-        if (user != null) {
-            OperationLog log =
-                    new OperationLog(user, operation, resourceType, resourceId);
-            log.setDetails(details);
-            operationLogRepository.save(log);
-        }
-    }
 }
\ No newline at end of file
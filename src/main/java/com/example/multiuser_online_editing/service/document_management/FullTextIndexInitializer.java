@@ -0,0 +1,71 @@
+package com.example.multiuser_online_editing.service.document_management;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 为高级搜索的标题、正文条件创建ngram全文索引（JPA注解无法声明FULLTEXT索引）
+ * ngram解析器按ngram_token_size（默认2）个字符切分，中文等没有空格分隔的文本也能使用索引；
+ * 创建索引时关闭停用词，否则包含停用词（例如a、i）的ngram都不会进入索引。
+ * 只在MySQL上执行，依赖entityManagerFactory保证Hibernate已经建好表
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class FullTextIndexInitializer {
+
+    private static final Logger log = LoggerFactory.getLogger(FullTextIndexInitializer.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void createIndexes() {
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                if (!"MySQL".equals(connection.getMetaData().getDatabaseProductName())) {
+                    return null;
+                }
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("SET SESSION innodb_ft_enable_stopword = OFF");
+                    try {
+                        createIndex(connection, statement, "ft_documents_title", "title");
+                        createIndex(connection, statement, "ft_documents_plain_text", "plain_text");
+                    } finally {
+                        statement.execute("SET SESSION innodb_ft_enable_stopword = ON");
+                    }
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.error("创建全文索引失败，高级搜索的标题、正文条件将无法使用", e);
+        }
+    }
+
+    private void createIndex(Connection connection, Statement statement, String indexName, String column)
+            throws SQLException {
+        try (PreparedStatement query = connection.prepareStatement(
+                "SELECT COUNT(*) FROM information_schema.statistics " +
+                "WHERE table_schema = DATABASE() AND table_name = 'documents' AND index_name = ?")) {
+            query.setString(1, indexName);
+            try (ResultSet rs = query.executeQuery()) {
+                if (rs.next() && rs.getInt(1) > 0) {
+                    return;
+                }
+            }
+        }
+        log.info("正在创建全文索引{}", indexName);
+        statement.execute("CREATE FULLTEXT INDEX " + indexName + " ON documents (" + column + ") WITH PARSER ngram");
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.multiuser_online_editing.service.document_management;
+
+import com.example.multiuser_online_editing.repository.document_management.SearchSnippet;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+public class SearchHighlighter { // 根据倒排索引中搜索词的位置，从正文纯文本中选出匹配最多的片段并标出高亮位置
+
+    public static final int FRAGMENT_LENGTH = 90; // 每个片段的最大字符数
+    public static final int MAX_FRAGMENTS = 2; // 每篇文档最多返回的片段数
+
+    /**
+     * text为正文的纯文本，第i个匹配位于[starts[i], ends[i])，是第terms[i]个搜索词（0..termCount-1），匹配按起始位置升序排列
+     * 依次选出至多MAX_FRAGMENTS个互不重叠的片段，每个片段包含的不同搜索词最多，其次匹配次数最多；片段按在正文中的位置排列
+     */
+    public static List<SearchSnippet> fragments(String text, int[] starts, int[] ends, int[] terms, int termCount) {
+        List<int[]> windows = new ArrayList<>(); // 已选出的片段[起始, 结束)
+        boolean[] used = new boolean[starts.length]; // 匹配已经包含在某个片段中，或者与某个片段重叠
+        int[] counts = new int[termCount];
+
+        while (windows.size() < MAX_FRAGMENTS) {
+            int[] available = new int[starts.length];
+            int m = 0;
+            for (int i = 0; i < starts.length; ++i) {
+                if (!used[i]) available[m++] = i;
+            }
+            if (m == 0) {
+                break;
+            }
+
+            // 滑动窗口：以第i个匹配开头、总长度不超过FRAGMENT_LENGTH的匹配为[i, j)
+            int bestFrom = -1, bestTo = -1, bestDistinct = 0, bestCount = 0;
+            int distinct = 0;
+            int j = 0;
+            for (int i = 0; i < m; ++i) {
+                while (j < m && (j == i || (ends[available[j]] - starts[available[i]] <= FRAGMENT_LENGTH
+                        && !straddles(windows, starts[available[i]], ends[available[j]])))) {
+                    if (counts[terms[available[j]]]++ == 0) ++distinct;
+                    ++j;
+                }
+                if (distinct > bestDistinct || (distinct == bestDistinct && j - i > bestCount)) {
+                    bestFrom = i;
+                    bestTo = j;
+                    bestDistinct = distinct;
+                    bestCount = j - i;
+                }
+                if (--counts[terms[available[i]]] == 0) --distinct;
+            }
+
+            int spanStart = starts[available[bestFrom]];
+            int spanEnd = spanStart;
+            for (int k = bestFrom; k < bestTo; ++k) {
+                spanEnd = Math.max(spanEnd, ends[available[k]]);
+            }
+            int[] window = window(text, spanStart, spanEnd, windows);
+            windows.add(window);
+            for (int i = 0; i < starts.length; ++i) {
+                if (starts[i] < window[1] && ends[i] > window[0]) used[i] = true;
+            }
+        }
+
+        windows.sort(Comparator.comparingInt(window -> window[0]));
+        List<SearchSnippet> snippets = new ArrayList<>();
+        for (int[] window : windows) {
+            snippets.add(new SearchSnippet(text.substring(window[0], window[1]), window[0], window[1] < text.length(),
+                    highlights(window, starts, ends)));
+        }
+        return snippets;
+    }
+
+    // [from, to)中间隔着已选出的片段
+    private static boolean straddles(List<int[]> windows, int from, int to) {
+        for (int[] window : windows) {
+            if (window[0] >= from && window[1] <= to) return true;
+        }
+        return false;
+    }
+
+    // 把匹配所在的范围向两侧扩展到FRAGMENT_LENGTH（匹配位于中间），但不超出正文，也不与已选出的片段重叠
+    private static int[] window(String text, int spanStart, int spanEnd, List<int[]> windows) {
+        int lower = 0;
+        int upper = text.length();
+        for (int[] window : windows) {
+            if (window[1] <= spanStart) lower = Math.max(lower, window[1]);
+            if (window[0] >= spanEnd) upper = Math.min(upper, window[0]);
+        }
+
+        int from = Math.max(lower, spanStart - (FRAGMENT_LENGTH - (spanEnd - spanStart)) / 2);
+        int to = Math.min(upper, from + FRAGMENT_LENGTH);
+        from = Math.max(lower, Math.min(from, to - FRAGMENT_LENGTH));
+        // 不把代理对截成两半
+        if (from > lower && Character.isLowSurrogate(text.charAt(from))) ++from;
+        if (to < upper && Character.isLowSurrogate(text.charAt(to))) --to;
+        return new int[]{from, to};
+    }
+
+    // 片段中的匹配位置（相对于片段），重叠的匹配（例如搜索模式分词得到的长词和其中的短词）合并为一个
+    private static List<int[]> highlights(int[] window, int[] starts, int[] ends) {
+        List<int[]> highlights = new ArrayList<>();
+        for (int i = 0; i < starts.length; ++i) {
+            if (starts[i] < window[0] || ends[i] > window[1]) {
+                continue;
+            }
+            int start = starts[i] - window[0];
+            int end = ends[i] - window[0];
+            int[] last = highlights.isEmpty() ? null : highlights.get(highlights.size() - 1);
+            if (last != null && start <= last[1]) {
+                last[1] = Math.max(last[1], end);
+            } else {
+                highlights.add(new int[]{start, end});
+            }
+        }
+        return highlights;
+    }
+}
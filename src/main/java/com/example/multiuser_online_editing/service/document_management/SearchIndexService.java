@@ -0,0 +1,633 @@
+package com.example.multiuser_online_editing.service.document_management;
+
+import com.example.multiuser_online_editing.entity.document_management.Document;
+import com.example.multiuser_online_editing.entity.document_management.DocumentStatus;
+import com.example.multiuser_online_editing.repository.document_management.DocumentRepository;
+import com.example.multiuser_online_editing.repository.document_management.SearchSnippet;
+import com.example.multiuser_online_editing.util.ContentText;
+import com.example.multiuser_online_editing.util.PositionCodec;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 文档搜索的倒排索引
+ * 索引保存在数据库中：search_postings记录每个词在每篇文档中的词频和位置，search_documents记录文档长度和建立索引时的版本号、标题，
+ * search_terms记录包含每个词的文档数（计算IDF）
+ * 搜索时只读取查询词的倒排列表，代价取决于匹配的倒排项数量，而不是文档总数和文档长度。
+ * 文档创建、修改、删除和恢复后放入待索引集合，由后台定时只为这些文档重新建立索引（同一文档的多次修改合并为一次）；
+ * 另有定时的一致性检查找出遗漏的文档。搜索时不建立索引，尚未建立索引的修改在后台建立索引之后才能被搜索到
+ */
+@Service
+public class SearchIndexService {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchIndexService.class);
+
+    private static final int CHUNK_SIZE = 1000; // IN条件中一次最多包含的ID数
+
+    private static final String INSERT_POSTING_SQL =
+            "INSERT INTO search_postings (term, document_id, frequency, position_deltas) VALUES (?, ?, ?, ?)";
+
+    private static final String INCREMENT_TERM_SQL =
+            "INSERT INTO search_terms (term, document_frequency) VALUES (?, 1) " +
+            "ON DUPLICATE KEY UPDATE document_frequency = document_frequency + 1";
+
+    private static final String DECREMENT_TERM_SQL =
+            "UPDATE search_terms SET document_frequency = document_frequency - 1 WHERE term = ?";
+
+    // 搜索词在用户可以访问的文档中的倒排项，访问权限在同一条SQL中过滤（文档所有者或协作者，且文档未被删除）
+    private static final String ACCESSIBLE_POSTINGS_SQL =
+            "SELECT p.term, p.document_id, p.frequency, s.length, d.updated_at FROM search_postings p " +
+            "JOIN search_documents s ON s.document_id = p.document_id " +
+            "JOIN documents d ON d.id = p.document_id " +
+            "WHERE p.term IN (:terms) AND d.status <> 'DELETED' AND (d.owner_id = :userId OR EXISTS (" +
+            "SELECT 1 FROM document_collaborators c WHERE c.document_id = d.id AND c.user_id = :userId)) " +
+            "ORDER BY p.term, p.document_id";
+
+    private static final String UPSERT_DOCUMENT_SQL =
+            "INSERT INTO search_documents (document_id, length, indexed_version, indexed_title) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE length = VALUES(length), indexed_version = VALUES(indexed_version), " +
+            "indexed_title = VALUES(indexed_title)";
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private TextAnalyzer textAnalyzer;
+
+    @Autowired
+    private SearchResultCache searchResultCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.search-index.bm25.k1}")
+    private double k1; // BM25的词频饱和参数
+
+    @Value("${app.search-index.bm25.b}")
+    private double b; // BM25的文档长度归一化参数
+
+    @Value("${app.search-index.parallel.min-documents}")
+    private int parallelMinDocuments; // 候选文档数达到该值时并行评分
+
+    @Value("${app.search-index.parallel.parallelism}")
+    private int parallelism; // 并行评分线程池的线程数，所有搜索请求共用
+
+    private ForkJoinPool scoringPool;
+
+    private final Object indexLock = new Object(); // 同一时刻只有一个线程写索引，避免同一文档的倒排项被重复写入
+
+    private TransactionTemplate transactionTemplate;
+
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet(); // 等待重新建立索引的文档ID
+
+    private volatile IndexStatistics statistics; // 整个索引的统计量，为null时尚未加载
+
+    private volatile boolean termsLoaded; // search_terms中已有所有词的文档数
+
+    private volatile boolean positionsEncoded; // 所有倒排项都已有position_deltas，之后建立的倒排项总是写入该列
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        scoringPool = new ForkJoinPool(parallelism);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scoringPool.shutdown();
+    }
+
+    /**
+     * 在用户可以访问的文档中搜索，返回按相关度（BM25）排序的至多limit篇文档的ID
+     */
+    public List<Long> search(String query, Long userId, int limit) {
+        Map<String, Integer> queryTerms = new LinkedHashMap<>();
+        textAnalyzer.analyze(query, (term, position) -> queryTerms.merge(term, 1, Integer::sum));
+
+        // 相同的搜索词在文档没有变化时直接返回缓存的结果
+        String cacheKey = SearchResultCache.key(userId, queryTerms, limit);
+        long generation = searchResultCache.generation(userId);
+        List<Long> cached = searchResultCache.get(userId, cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+        List<Long> result = rank(queryTerms, userId, limit);
+        searchResultCache.put(userId, cacheKey, generation, result);
+        return result;
+    }
+
+    private List<Long> rank(Map<String, Integer> queryTerms, Long userId, int limit) {
+        if (queryTerms.isEmpty()) {
+            // 没有有效搜索词时返回最近更新的文档
+            return documentRepository.findRecentAccessibleIds(userId, PageRequest.of(0, limit));
+        }
+
+        // 候选文档只有用户可以访问、且出现在搜索词倒排列表中的文档，代价取决于用户可以访问的匹配倒排项数量
+        List<String> terms = new ArrayList<>(queryTerms.keySet());
+        Postings postings = loadPostings(terms, userId);
+        Map<Long, LocalDateTime> updatedAts = postings.updatedAts;
+        if (updatedAts.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // 候选文档按ID升序编号（与倒排项的读取顺序一致，因此每个倒排列表按编号有序）
+        List<Long> ids = new ArrayList<>(updatedAts.keySet());
+        Collections.sort(ids);
+
+        // 按更新时间倒序的名次，得分相同时更新时间较近的文档在前
+        List<Long> byRecency = new ArrayList<>(ids);
+        byRecency.sort(Comparator.comparing((Long id) -> updatedAts.get(id), Comparator.nullsLast(Comparator.<LocalDateTime>reverseOrder()))
+                .thenComparing(Comparator.<Long>reverseOrder()));
+        Map<Long, Integer> numbers = new HashMap<>();
+        int[] documentLengths = new int[ids.size()];
+        int[] recency = new int[ids.size()];
+        for (int i = 0; i < ids.size(); ++i) {
+            numbers.put(ids.get(i), i);
+            documentLengths[i] = postings.lengths.get(ids.get(i));
+        }
+        for (int i = 0; i < byRecency.size(); ++i) {
+            recency[numbers.get(byRecency.get(i))] = i;
+        }
+
+        // IDF使用整个索引中包含该词的文档数，而不是用户可以访问的文档数
+        Map<String, Integer> termFrequencies = documentFrequencies(terms);
+        int[] queryFrequencies = new int[terms.size()];
+        int[] documentFrequencies = new int[terms.size()];
+        int[][] postingDocuments = new int[terms.size()][];
+        int[][] postingFrequencies = new int[terms.size()][];
+        for (int t = 0; t < terms.size(); ++t) {
+            queryFrequencies[t] = queryTerms.get(terms.get(t));
+            documentFrequencies[t] = Math.max(termFrequencies.getOrDefault(terms.get(t), 0), postings.sizes[t]);
+            postingDocuments[t] = new int[postings.sizes[t]];
+            postingFrequencies[t] = Arrays.copyOf(postings.frequencies[t], postings.sizes[t]);
+            for (int i = 0; i < postings.sizes[t]; ++i) {
+                postingDocuments[t][i] = numbers.get(postings.documents[t][i]);
+            }
+        }
+
+        // 平均长度使用整个索引的统计量；候选文档较多时在专用线程池中并行评分
+        IndexStatistics statistics = statistics();
+        double averageLength = statistics.documents == 0 ? 0 : (double) statistics.length / statistics.documents;
+        ForkJoinPool pool = ids.size() >= parallelMinDocuments ? scoringPool : null;
+        int[] top = DocumentSearch_AI.advancedSearch_AI(documentLengths, recency, postingDocuments, postingFrequencies,
+                queryFrequencies, statistics.documents, averageLength, documentFrequencies, k1, b, limit, pool);
+        List<Long> result = new ArrayList<>(top.length);
+        for (int d : top) {
+            result.add(ids.get(d));
+        }
+        return result;
+    }
+
+    /**
+     * 为搜索结果生成高亮片段：片段由倒排索引中记录的搜索词位置定位，只读取这些文档已经提取好的纯文本，不重新分词
+     * 文档在建立索引之后又被修改（版本号或标题与建立索引时不一致，只修改标题时版本号不变）时，才重新分析该文档得到词的位置
+     * 返回文档ID -> 片段列表，只在标题中匹配的文档片段列表为空
+     */
+    public Map<Long, List<SearchSnippet>> highlight(String query, List<Long> documentIds) {
+        Map<Long, List<SearchSnippet>> snippets = new HashMap<>();
+        Map<String, Integer> termIndexes = new HashMap<>();
+        textAnalyzer.analyze(query, (term, position) -> termIndexes.putIfAbsent(term, termIndexes.size()));
+        if (termIndexes.isEmpty() || documentIds.isEmpty()) {
+            return snippets;
+        }
+        List<String> terms = new ArrayList<>(termIndexes.keySet());
+
+        Map<Long, HighlightSource> sources = new HashMap<>();
+        Set<Long> indexed = new HashSet<>(); // 索引与文档版本、标题一致的文档
+        for (List<Long> chunk : chunks(documentIds)) {
+            namedParameterJdbcTemplate.query(
+                    "SELECT d.id, d.title, d.plain_text, CASE WHEN d.plain_text IS NULL THEN d.content END, " +
+                    "d.version, s.indexed_version, s.indexed_title FROM documents d " +
+                    "LEFT JOIN search_documents s ON s.document_id = d.id WHERE d.id IN (:ids)",
+                    Map.of("ids", chunk),
+                    rs -> {
+                        // 补齐纯文本列之前的旧文档临时从HTML提取（与建立索引时一致）
+                        String plainText = rs.getString(3) != null ? rs.getString(3) : ContentText.toPlainText(rs.getString(4));
+                        HighlightSource source = new HighlightSource(rs.getString(2) + "\n" + plainText,
+                                rs.getString(2).length() + 1);
+                        sources.put(rs.getLong(1), source);
+                        long indexedVersion = rs.getLong(6);
+                        if (!rs.wasNull() && indexedVersion == rs.getLong(5) && rs.getString(2).equals(rs.getString(7))) {
+                            indexed.add(rs.getLong(1));
+                        }
+                    });
+        }
+
+        // 索引最新的文档直接使用倒排项中的位置
+        for (List<Long> chunk : chunks(new ArrayList<>(indexed))) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("terms", terms);
+            params.put("ids", chunk);
+            namedParameterJdbcTemplate.query(
+                    "SELECT term, document_id, position_deltas FROM search_postings " +
+                    "WHERE term IN (:terms) AND document_id IN (:ids)",
+                    params,
+                    rs -> {
+                        String term = rs.getString(1);
+                        byte[] positionDeltas = rs.getBytes(3);
+                        if (positionDeltas == null) {
+                            indexed.remove(rs.getLong(2)); // 改用位置编码之前写入的倒排项，没有位置
+                            return;
+                        }
+                        HighlightSource source = sources.get(rs.getLong(2));
+                        for (int position : PositionCodec.decode(positionDeltas)) {
+                            source.add(position, term, termIndexes.get(term));
+                        }
+                    });
+        }
+        // 其余文档重新分析
+        for (Map.Entry<Long, HighlightSource> entry : sources.entrySet()) {
+            if (!indexed.contains(entry.getKey())) {
+                HighlightSource source = entry.getValue();
+                source.hits.clear();
+                textAnalyzer.analyzePlainText(source.text, (term, position) -> {
+                    Integer t = termIndexes.get(term);
+                    if (t != null) source.add(position, term, t);
+                });
+            }
+        }
+
+        for (Map.Entry<Long, HighlightSource> entry : sources.entrySet()) {
+            snippets.put(entry.getKey(), entry.getValue().fragments(terms.size()));
+        }
+        return snippets;
+    }
+
+    /**
+     * 文档内容、标题或状态发生变化，等待后台重新建立索引；在事务中调用时等到事务提交后再加入
+     */
+    public void scheduleReindex(Long documentId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    pending.add(documentId);
+                }
+            });
+        } else {
+            pending.add(documentId);
+        }
+    }
+
+    /**
+     * 定时为待索引的文档重新建立索引：已删除（包括放入回收站）的文档从索引中移除，其余文档重新分词
+     * 文档频率等统计量在搜索时由倒排列表得出，因此只需要改写这些文档自己的倒排项
+     */
+    @Scheduled(fixedDelayString = "${app.search-index.flush-interval-ms}")
+    public void flushPending() {
+        List<Long> ids = new ArrayList<>();
+        for (Long id : pending) {
+            if (pending.remove(id)) {
+                ids.add(id);
+            }
+        }
+
+        for (List<Long> chunk : chunks(ids)) {
+            Set<Long> missing = new HashSet<>(chunk);
+            try {
+                for (Document document : documentRepository.findAllById(chunk)) {
+                    missing.remove(document.getId());
+                    if (document.getStatus() == DocumentStatus.DELETED) {
+                        remove(document.getId());
+                    } else {
+                        index(document);
+                    }
+                }
+                for (Long id : missing) {
+                    remove(id);
+                }
+                // 修改提交之后、重新建立索引之前的搜索使用的是旧的倒排项，其结果可能已经以新的代数缓存
+                searchResultCache.invalidateDocuments(chunk);
+            } catch (RuntimeException e) {
+                // 未完成的文档留到下次重试；即使一直失败，定时的一致性检查也会再次发现这些文档
+                pending.addAll(chunk);
+                log.error("更新搜索索引失败，将在下次刷新时重试", e);
+            }
+        }
+    }
+
+    /**
+     * 定时找出没有索引或索引已过期的文档（例如启用索引之前已有的文档），以及已经删除却仍在索引中的文档，加入待索引集合；
+     * 倒排项还没有position_deltas（位置改为编码保存之前建立的索引）的文档也重新建立索引
+     * 搜索时不再逐篇检查文档是否已建立索引，由这里保证索引最终与文档一致
+     */
+    @Scheduled(fixedDelayString = "${app.search-index.reconcile-interval-ms}")
+    public void reconcile() {
+        try {
+            pending.addAll(jdbcTemplate.queryForList(
+                    "SELECT d.id FROM documents d LEFT JOIN search_documents s ON s.document_id = d.id " +
+                    "WHERE d.status <> 'DELETED' AND (s.document_id IS NULL OR s.indexed_version <> d.version " +
+                    "OR s.indexed_title IS NULL OR s.indexed_title <> d.title)",
+                    Long.class));
+            pending.addAll(jdbcTemplate.queryForList(
+                    "SELECT s.document_id FROM search_documents s LEFT JOIN documents d ON d.id = s.document_id " +
+                    "WHERE d.id IS NULL OR d.status = 'DELETED'",
+                    Long.class));
+            if (!positionsEncoded) {
+                List<Long> unencoded = jdbcTemplate.queryForList(
+                        "SELECT DISTINCT document_id FROM search_postings WHERE position_deltas IS NULL", Long.class);
+                pending.addAll(unencoded);
+                positionsEncoded = unencoded.isEmpty();
+            }
+        } catch (RuntimeException e) {
+            log.error("检查搜索索引失败", e);
+        }
+    }
+
+    /**
+     * 为文档重新建立索引，返回文档的词数
+     * 分析的文本为标题、换行符和正文的纯文本，词的位置是在该文本中的字符位置
+     */
+    public int index(Document document) {
+        // 按词汇总词频和位置
+        Map<String, TermPositions> positions = new HashMap<>();
+        int[] length = new int[1];
+        textAnalyzer.analyzePlainText(document.getTitle() + "\n" + plainText(document), (term, position) -> {
+            positions.computeIfAbsent(term, t -> new TermPositions()).add(position);
+            ++length[0];
+        });
+
+        List<Object[]> postingArgs = new ArrayList<>();
+        for (Map.Entry<String, TermPositions> entry : positions.entrySet()) {
+            postingArgs.add(new Object[]{entry.getKey(), document.getId(), entry.getValue().frequency,
+                    PositionCodec.encode(entry.getValue().positions, entry.getValue().frequency)});
+        }
+
+        synchronized (indexLock) {
+            ensureDocumentFrequencies();
+            List<Integer> previous = transactionTemplate.execute(status -> {
+                List<Integer> previousLength = jdbcTemplate.queryForList(
+                        "SELECT length FROM search_documents WHERE document_id = ?", Integer.class, document.getId());
+                List<String> previousTerms = jdbcTemplate.queryForList(
+                        "SELECT term FROM search_postings WHERE document_id = ?", String.class, document.getId());
+                jdbcTemplate.update("DELETE FROM search_postings WHERE document_id = ?", document.getId());
+                jdbcTemplate.batchUpdate(INSERT_POSTING_SQL, postingArgs);
+                updateDocumentFrequencies(previousTerms, positions.keySet());
+                jdbcTemplate.update(UPSERT_DOCUMENT_SQL, document.getId(), length[0], document.getVersion(),
+                        document.getTitle());
+                return previousLength;
+            });
+            updateStatistics(previous, length[0]);
+        }
+        return length[0];
+    }
+
+    /**
+     * 从索引中移除文档
+     */
+    public void remove(Long documentId) {
+        synchronized (indexLock) {
+            ensureDocumentFrequencies();
+            List<Integer> previous = transactionTemplate.execute(status -> {
+                List<Integer> previousLength = jdbcTemplate.queryForList(
+                        "SELECT length FROM search_documents WHERE document_id = ?", Integer.class, documentId);
+                List<String> previousTerms = jdbcTemplate.queryForList(
+                        "SELECT term FROM search_postings WHERE document_id = ?", String.class, documentId);
+                jdbcTemplate.update("DELETE FROM search_postings WHERE document_id = ?", documentId);
+                updateDocumentFrequencies(previousTerms, Set.of());
+                jdbcTemplate.update("DELETE FROM search_documents WHERE document_id = ?", documentId);
+                return previousLength;
+            });
+            updateStatistics(previous, null);
+        }
+    }
+
+    // 整个索引的文档数和总词数，第一次搜索时从数据库读取，之后随建立、移除索引增量更新
+    private IndexStatistics statistics() {
+        IndexStatistics current = statistics;
+        if (current != null) {
+            return current;
+        }
+        synchronized (indexLock) {
+            if (statistics == null) {
+                statistics = jdbcTemplate.queryForObject(
+                        "SELECT COUNT(*), COALESCE(SUM(length), 0) FROM search_documents",
+                        (rs, rowNum) -> new IndexStatistics(rs.getLong(1), rs.getLong(2)));
+            }
+            return statistics;
+        }
+    }
+
+    // 在indexLock中、写索引的事务提交后调用：previous为原来的词数（没有索引时为空），length为新的词数（移除时为null）
+    private void updateStatistics(List<Integer> previous, Integer length) {
+        if (statistics == null) {
+            return; // 尚未加载，加载时会读到已提交的结果
+        }
+        long documents = statistics.documents;
+        long totalLength = statistics.length;
+        if (!previous.isEmpty()) {
+            --documents;
+            totalLength -= previous.get(0);
+        }
+        if (length != null) {
+            ++documents;
+            totalLength += length;
+        }
+        statistics = new IndexStatistics(documents, totalLength);
+    }
+
+    // 正文的纯文本；补齐纯文本列之前的旧文档临时从HTML提取
+    private static String plainText(Document document) {
+        return document.getPlainText() != null ? document.getPlainText() : ContentText.toPlainText(document.getContent());
+    }
+
+    // 读取搜索词在用户可以访问的文档中的倒排项（按term、document_id顺序，因此每个倒排列表按文档ID有序），
+    // 同时取出文档的词数和更新时间
+    private Postings loadPostings(List<String> terms, Long userId) {
+        Map<String, Integer> termIndexes = new HashMap<>();
+        for (int t = 0; t < terms.size(); ++t) {
+            termIndexes.put(terms.get(t), t);
+        }
+        Postings postings = new Postings(terms.size());
+        namedParameterJdbcTemplate.query(ACCESSIBLE_POSTINGS_SQL, Map.of("terms", terms, "userId", userId),
+                rs -> {
+                    long documentId = rs.getLong(2);
+                    postings.add(termIndexes.get(rs.getString(1)), documentId, rs.getInt(3));
+                    postings.lengths.put(documentId, rs.getInt(4));
+                    Timestamp updatedAt = rs.getTimestamp(5);
+                    postings.updatedAts.put(documentId, updatedAt == null ? null : updatedAt.toLocalDateTime());
+                });
+        return postings;
+    }
+
+    // 搜索词在整个索引中的文档数
+    private Map<String, Integer> documentFrequencies(List<String> terms) {
+        ensureDocumentFrequencies();
+        Map<String, Integer> frequencies = new HashMap<>();
+        namedParameterJdbcTemplate.query("SELECT term, document_frequency FROM search_terms WHERE term IN (:terms)",
+                Map.of("terms", terms), rs -> {
+                    frequencies.put(rs.getString(1), rs.getInt(2));
+                });
+        return frequencies;
+    }
+
+    // 引入search_terms之前已经建立的索引：第一次使用时（search_terms为空而倒排项不为空）由倒排项统计一次，之后随建立、移除索引增量更新
+    private void ensureDocumentFrequencies() {
+        if (termsLoaded) {
+            return;
+        }
+        synchronized (indexLock) {
+            if (!termsLoaded) {
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (jdbcTemplate.queryForList("SELECT term FROM search_terms LIMIT 1", String.class).isEmpty()) {
+                        jdbcTemplate.update("INSERT INTO search_terms (term, document_frequency) " +
+                                "SELECT term, COUNT(*) FROM search_postings GROUP BY term");
+                    }
+                });
+                termsLoaded = true;
+            }
+        }
+    }
+
+    // 在写索引的事务中调用：文档包含的词从previous变为current，更新这些词的文档数
+    private void updateDocumentFrequencies(List<String> previous, Set<String> current) {
+        Set<String> previousTerms = new HashSet<>(previous);
+        List<Object[]> added = new ArrayList<>();
+        List<Object[]> removed = new ArrayList<>();
+        for (String term : current) {
+            if (!previousTerms.contains(term)) added.add(new Object[]{term});
+        }
+        for (String term : previousTerms) {
+            if (!current.contains(term)) removed.add(new Object[]{term});
+        }
+        jdbcTemplate.batchUpdate(INCREMENT_TERM_SQL, added);
+        jdbcTemplate.batchUpdate(DECREMENT_TERM_SQL, removed);
+    }
+
+    private static List<List<Long>> chunks(List<Long> ids) {
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += CHUNK_SIZE) {
+            chunks.add(ids.subList(i, Math.min(i + CHUNK_SIZE, ids.size())));
+        }
+        return chunks;
+    }
+
+    // 搜索词的倒排列表：第t个词出现在documents[t]的前sizes[t]篇文档中，词频为frequencies[t]
+    private static class Postings {
+        private final long[][] documents;
+        private final int[][] frequencies;
+        private final int[] sizes;
+        private final Map<Long, Integer> lengths = new HashMap<>(); // 候选文档ID -> 词数
+        private final Map<Long, LocalDateTime> updatedAts = new HashMap<>(); // 候选文档ID -> 更新时间
+
+        private Postings(int termCount) {
+            documents = new long[termCount][16];
+            frequencies = new int[termCount][16];
+            sizes = new int[termCount];
+        }
+
+        private void add(int t, long documentId, int frequency) {
+            if (sizes[t] == documents[t].length) {
+                documents[t] = Arrays.copyOf(documents[t], sizes[t] * 2);
+                frequencies[t] = Arrays.copyOf(frequencies[t], sizes[t] * 2);
+            }
+            documents[t][sizes[t]] = documentId;
+            frequencies[t][sizes[t]++] = frequency;
+        }
+    }
+
+    // 整个索引的文档数和所有文档的词数之和
+    private static class IndexStatistics {
+        private final long documents;
+        private final long length;
+
+        private IndexStatistics(long documents, long length) {
+            this.documents = documents;
+            this.length = length;
+        }
+    }
+
+    // 生成高亮片段所需的一篇文档的文本（标题、换行符和正文纯文本，与建立索引时相同）和搜索词在正文中的匹配
+    private static class HighlightSource {
+        private final String text;
+        private final int contentStart; // 正文在text中的起始位置
+        private final List<int[]> hits = new ArrayList<>(); // [起始, 结束, 搜索词编号]，相对于正文
+
+        private HighlightSource(String text, int contentStart) {
+            this.text = text;
+            this.contentStart = contentStart;
+        }
+
+        // position为词在text中的位置，标题中的匹配不生成片段
+        private void add(int position, String term, int termIndex) {
+            if (position < contentStart || position >= text.length()) {
+                return;
+            }
+            hits.add(new int[]{position - contentStart, matchEnd(position, term) - contentStart, termIndex});
+        }
+
+        // 分词时去掉了词中的标点等字符，因此从position开始依次匹配词中的字符（不区分大小写），得到匹配在原文中的结束位置
+        private int matchEnd(int position, String term) {
+            int end = position;
+            int matched = 0;
+            while (matched < term.length() && end < text.length() && end - position < TextAnalyzer.MAX_TERM_LENGTH * 2) {
+                if (Character.toLowerCase(text.charAt(end)) == term.charAt(matched)) {
+                    ++matched;
+                }
+                ++end;
+            }
+            return matched == term.length() ? end : Math.min(position + term.length(), text.length());
+        }
+
+        private List<SearchSnippet> fragments(int termCount) {
+            hits.sort(Comparator.comparingInt((int[] hit) -> hit[0]).thenComparingInt(hit -> hit[1]));
+            int[] starts = new int[hits.size()];
+            int[] ends = new int[hits.size()];
+            int[] terms = new int[hits.size()];
+            for (int i = 0; i < hits.size(); ++i) {
+                starts[i] = hits.get(i)[0];
+                ends[i] = hits.get(i)[1];
+                terms[i] = hits.get(i)[2];
+            }
+            return SearchHighlighter.fragments(text.substring(contentStart), starts, ends, terms, termCount);
+        }
+    }
+
+    // 一个词在一篇文档中的词频和位置
+    private static class TermPositions {
+        private int frequency;
+        private int[] positions = new int[4];
+
+        private void add(int position) {
+            if (frequency == positions.length) {
+                positions = Arrays.copyOf(positions, frequency * 2);
+            }
+            positions[frequency++] = position;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.multiuser_online_editing.service.document_management;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * 删除倒排项表中已经不再使用的positions列（词位置改为position_deltas保存，ddl-auto: update不会删除列）
+ * 该列中的旧位置由SearchIndexService.reconcile为这些文档重新建立索引后补齐到position_deltas。
+ * 只在MySQL上执行，依赖entityManagerFactory保证Hibernate已经建好表
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class SearchPostingSchemaInitializer {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchPostingSchemaInitializer.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void dropObsoleteColumns() {
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                if (!"MySQL".equals(connection.getMetaData().getDatabaseProductName())) {
+                    return null;
+                }
+                try (PreparedStatement query = connection.prepareStatement(
+                        "SELECT COUNT(*) FROM information_schema.columns " +
+                        "WHERE table_schema = DATABASE() AND table_name = 'search_postings' AND column_name = 'positions'");
+                     ResultSet rs = query.executeQuery()) {
+                    if (!rs.next() || rs.getInt(1) == 0) {
+                        return null;
+                    }
+                }
+                log.info("正在删除search_postings.positions列");
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("ALTER TABLE search_postings DROP COLUMN positions");
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.error("删除search_postings.positions列失败", e);
+        }
+    }
+}
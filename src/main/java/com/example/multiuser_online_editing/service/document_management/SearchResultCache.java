@@ -0,0 +1,159 @@
+package com.example.multiuser_online_editing.service.document_management;
+
+import com.example.multiuser_online_editing.entity.document_management.Document;
+import com.example.multiuser_online_editing.entity.user_management.User;
+import com.example.multiuser_online_editing.repository.document_management.DocumentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * AI搜索的结果缓存
+ * 按用户和规范化后的搜索词（词及出现次数，按词排序）缓存排好序的文档ID，命中时不再访问数据库。
+ * 每个用户有一个代数，用户可以访问的任何文档发生变化（创建、修改、删除、恢复）或用户被添加、移除为协作者时
+ * 代数加一，之前缓存的结果全部失效。代数按用户ID散列到固定数量的槽中，内存不随用户数增长，
+ * 同一个槽的其他用户的缓存也会一起失效，但不会使用过期的结果。修改后的文档由后台重新建立索引，在此之前的搜索仍使用旧的倒排项，
+ * 因此重新建立索引之后会再次失效。缓存的条目数和存活时间都有上限
+ */
+@Component
+public class SearchResultCache {
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Value("${app.search-result-cache.max-entries}")
+    private int maxEntries; // 所有用户的缓存条目总数上限
+
+    @Value("${app.search-result-cache.ttl-ms}")
+    private long ttlMs; // 缓存条目的存活时间
+
+    // "用户ID|结果数|搜索词" -> 缓存的结果，按访问顺序排列（最久未使用的在前）
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private static final int GENERATION_SLOTS = 4096; // 代数槽数，2的幂
+
+    // 用户ID散列到的槽 -> 代数，只增不减
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_SLOTS);
+
+    /**
+     * 缓存键：同一组搜索词（不论顺序）得到同一个键
+     */
+    public static String key(Long userId, Map<String, Integer> queryTerms, int limit) {
+        StringBuilder key = new StringBuilder().append(userId).append('|').append(limit);
+        for (Map.Entry<String, Integer> entry : new TreeMap<>(queryTerms).entrySet()) {
+            key.append('|').append(entry.getKey()).append(':').append(entry.getValue());
+        }
+        return key.toString();
+    }
+
+    /**
+     * 用户当前的代数，在开始计算搜索结果之前读取，写入缓存时用于判断计算期间结果是否已经失效
+     */
+    public long generation(Long userId) {
+        return generations.get(slot(userId));
+    }
+
+    public List<Long> get(Long userId, String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.generation != generation(userId) || System.currentTimeMillis() - entry.createdAt > ttlMs) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.documentIds;
+        }
+    }
+
+    public void put(Long userId, String key, long generation, List<Long> documentIds) {
+        if (generation != generation(userId)) {
+            return; // 计算期间有文档发生了变化
+        }
+        synchronized (entries) {
+            entries.put(key, new Entry(List.copyOf(documentIds), generation, System.currentTimeMillis()));
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (entries.size() > maxEntries && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 文档的所有者和协作者的缓存失效（在事务中调用时等到事务提交后再失效）
+     */
+    public void invalidate(Document document) {
+        List<Long> userIds = new ArrayList<>();
+        userIds.add(document.getOwner().getId());
+        for (User collaborator : document.getCollaborators()) {
+            userIds.add(collaborator.getId());
+        }
+        invalidateUsers(userIds);
+    }
+
+    /**
+     * 只知道文档ID时（例如协作编辑的内容写回数据库后），查询文档的所有者和协作者
+     */
+    public void invalidateDocument(Long documentId) {
+        invalidateUsers(documentRepository.findMemberIds(documentId));
+    }
+
+    /**
+     * 多篇文档的所有者和协作者的缓存失效（例如后台重新建立索引之后）
+     */
+    public void invalidateDocuments(Collection<Long> documentIds) {
+        invalidateUsers(documentRepository.findMemberIdsIn(documentIds));
+    }
+
+    public void invalidateUser(Long userId) {
+        invalidateUsers(List.of(userId));
+    }
+
+    private void invalidateUsers(Collection<Long> userIds) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    bump(userIds);
+                }
+            });
+        } else {
+            bump(userIds);
+        }
+    }
+
+    private void bump(Collection<Long> userIds) {
+        for (Long userId : userIds) {
+            generations.incrementAndGet(slot(userId));
+        }
+    }
+
+    private static int slot(Long userId) {
+        return Long.hashCode(userId) & (GENERATION_SLOTS - 1);
+    }
+
+    private static class Entry {
+        private final List<Long> documentIds;
+        private final long generation;
+        private final long createdAt;
+
+        private Entry(List<Long> documentIds, long generation, long createdAt) {
+            this.documentIds = documentIds;
+            this.generation = generation;
+            this.createdAt = createdAt;
+        }
+    }
+}
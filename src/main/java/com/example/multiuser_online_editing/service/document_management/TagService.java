@@ -1,12 +1,10 @@
 package com.example.multiuser_online_editing.service.document_management;
 
 import com.example.multiuser_online_editing.entity.document_management.Tag;
-import com.example.multiuser_online_editing.entity.user_management.OperationLog;
 import com.example.multiuser_online_editing.entity.user_management.Role;
 import com.example.multiuser_online_editing.entity.user_management.User;
 import com.example.multiuser_online_editing.repository.document_management.TagRepository;
-import com.example.multiuser_online_editing.repository.user_management.OperationLogRepository;
-import com.example.multiuser_online_editing.repository.user_management.UserRepository;
+import com.example.multiuser_online_editing.service.user_management.OperationLogService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -23,10 +21,7 @@ public class TagService {
     private TagRepository tagRepository;
 
     @Autowired
-    private UserRepository userRepository;
-
-    @Autowired
-    private OperationLogRepository operationLogRepository;
+    private OperationLogService operationLogService;
 
     // 创建标签
     public Tag createTag(String name, String description, User owner) {
@@ -48,7 +43,7 @@ public class TagService {
         Tag savedTag = tagRepository.save(tag);
 
         // 记录操作日志
-        logOperation(owner.getId(), "CREATE_TAG", "TAG", savedTag.getId(),
+        operationLogService.log(owner.getId(), "CREATE_TAG", "TAG", savedTag.getId(),
                 "创建标签: " + name);
 
         return savedTag;
@@ -78,7 +73,7 @@ public class TagService {
         Tag updatedTag = tagRepository.save(tag);
 
         // 记录操作日志
-        logOperation(user.getId(), "UPDATE_TAG", "TAG", tagId,
+        operationLogService.log(user.getId(), "UPDATE_TAG", "TAG", tagId,
                 "更新标签: " + name);
 
         return updatedTag;
@@ -102,7 +97,7 @@ public class TagService {
         tagRepository.delete(tag);
 
         // 记录操作日志
-        logOperation(user.getId(), "DELETE_TAG", "TAG", tagId,
+        operationLogService.log(user.getId(), "DELETE_TAG", "TAG", tagId,
                 "删除标签: " + tag.getName());
     }
 
@@ -153,20 +148,10 @@ public class TagService {
 
         // 记录操作日志
         if (!createdTags.isEmpty()) {
-            logOperation(user.getId(), "BATCH_CREATE_TAGS", "TAG", null,
+            operationLogService.log(user.getId(), "BATCH_CREATE_TAGS", "TAG", null,
                     "批量创建标签: " + createdTags.size() + "个");
         }
 
         return createdTags;
     }
-
-    private void logOperation(Long userId, String operation, String resourceType, Long resourceId, String details) {
-        User user = userRepository.findById(userId).orElse(null);
-        if (user != null) {
-            OperationLog log =
-                    new OperationLog(user, operation, resourceType, resourceId);
-            log.setDetails(details);
-            operationLogRepository.save(log);
-        }
-    }
 }
\ No newline at end of file
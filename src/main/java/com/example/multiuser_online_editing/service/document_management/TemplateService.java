@@ -3,12 +3,10 @@ package com.example.multiuser_online_editing.service.document_management;
 import com.example.multiuser_online_editing.entity.document_management.DocumentType;
 import com.example.multiuser_online_editing.entity.document_management.Template;
 import com.example.multiuser_online_editing.entity.document_management.TemplateCategory;
-import com.example.multiuser_online_editing.entity.user_management.OperationLog;
 import com.example.multiuser_online_editing.entity.user_management.Role;
 import com.example.multiuser_online_editing.entity.user_management.User;
 import com.example.multiuser_online_editing.repository.document_management.TemplateRepository;
-import com.example.multiuser_online_editing.repository.user_management.OperationLogRepository;
-import com.example.multiuser_online_editing.repository.user_management.UserRepository;
+import com.example.multiuser_online_editing.service.user_management.OperationLogService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -26,10 +24,7 @@ public class TemplateService {
     private TemplateRepository templateRepository;
 
     @Autowired
-    private UserRepository userRepository;
-
-    @Autowired
-    private OperationLogRepository operationLogRepository;
+    private OperationLogService operationLogService;
 
     // 创建模板
     public Template createTemplate(String name, String description, String content,
@@ -51,7 +46,7 @@ public class TemplateService {
         Template savedTemplate = templateRepository.save(template);
 
         // 记录操作日志
-        logOperation(owner.getId(), "CREATE_TEMPLATE", "TEMPLATE", savedTemplate.getId(),
+        operationLogService.log(owner.getId(), "CREATE_TEMPLATE", "TEMPLATE", savedTemplate.getId(),
                 "创建模板: " + name + (isPublic ? " (公开)" : " (私有)"));
 
         return savedTemplate;
@@ -79,7 +74,7 @@ public class TemplateService {
         Template updatedTemplate = templateRepository.save(template);
 
         // 记录操作日志
-        logOperation(user.getId(), "UPDATE_TEMPLATE", "TEMPLATE", templateId,
+        operationLogService.log(user.getId(), "UPDATE_TEMPLATE", "TEMPLATE", templateId,
                 "更新模板: " + name);
 
         return updatedTemplate;
@@ -98,7 +93,7 @@ public class TemplateService {
         templateRepository.delete(template);
 
         // 记录操作日志
-        logOperation(user.getId(), "DELETE_TEMPLATE", "TEMPLATE", templateId,
+        operationLogService.log(user.getId(), "DELETE_TEMPLATE", "TEMPLATE", templateId,
                 "删除模板: " + template.getName());
     }
 
@@ -144,19 +139,9 @@ public class TemplateService {
         Template updatedTemplate = templateRepository.save(template);
 
         // 记录操作日志
-        logOperation(user.getId(), "TOGGLE_TEMPLATE_VISIBILITY", "TEMPLATE", templateId,
+        operationLogService.log(user.getId(), "TOGGLE_TEMPLATE_VISIBILITY", "TEMPLATE", templateId,
                 (updatedTemplate.getIsPublic() ? "公开" : "私有") + "模板: " + template.getName());
 
         return updatedTemplate;
     }
-
-    private void logOperation(Long userId, String operation, String resourceType, Long resourceId, String details) {
-        User user = userRepository.findById(userId).orElse(null);
-        if (user != null) {
-            OperationLog log =
-                    new OperationLog(user, operation, resourceType, resourceId);
-            log.setDetails(details);
-            operationLogRepository.save(log);
-        }
-    }
 }
\ No newline at end of file
@@ -0,0 +1,112 @@
+package com.example.multiuser_online_editing.service.document_management;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 文档聚类使用的词频向量缓存
+ * 分词是聚类中最耗时的一步，文档的版本号和标题不变时直接使用缓存的词频向量，不再重新分词。
+ * 每个文档只缓存最新版本；按所有向量的词数之和限制容量，超出时淘汰最久未使用的文档
+ */
+@Component
+public class TermVectorCache {
+
+    private static final int CONTENT_LENGTH = 300; // 聚类只使用正文纯文本的前300个字符
+
+    @Autowired
+    private TextAnalyzer textAnalyzer;
+
+    @Value("${app.term-vector-cache.max-weight}")
+    private long maxWeight; // 缓存中所有向量的词数之和的上限
+
+    // 文档ID -> 词频向量，按访问顺序排列（最久未使用的在前）
+    private final LinkedHashMap<Long, TermVector> vectors = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long weight;
+
+    /**
+     * 缓存中文档该版本（版本号和标题都相同）的词频向量，没有时返回null，调用方再加载正文并调用put
+     */
+    public synchronized TermVector get(Long documentId, Long version, String title) {
+        TermVector cached = vectors.get(documentId);
+        if (cached != null && cached.version.equals(version) && Objects.equals(cached.title, title)) {
+            return cached;
+        }
+        return null;
+    }
+
+    /**
+     * 对文档的标题和正文纯文本的开头分词，缓存并返回词频向量
+     */
+    public TermVector put(Long documentId, Long version, String title, String plainText) {
+        // 分词在锁外进行
+        TermVector vector = analyze(version, title, plainText);
+        synchronized (this) {
+            TermVector previous = vectors.put(documentId, vector);
+            if (previous != null) {
+                weight -= previous.weight();
+            }
+            weight += vector.weight();
+            evict();
+        }
+        return vector;
+    }
+
+    private TermVector analyze(Long version, String title, String plainText) {
+        String content = plainText.length() > CONTENT_LENGTH ? plainText.substring(0, CONTENT_LENGTH) : plainText;
+
+        Map<String, int[]> frequencies = new LinkedHashMap<>(); // 按词第一次出现的顺序
+        int[] length = new int[1];
+        textAnalyzer.analyzePlainText(title + " " + content, (term, position) -> {
+            ++frequencies.computeIfAbsent(term, t -> new int[1])[0];
+            ++length[0];
+        });
+
+        String[] terms = new String[frequencies.size()];
+        int[] counts = new int[frequencies.size()];
+        int i = 0;
+        for (Map.Entry<String, int[]> entry : frequencies.entrySet()) {
+            terms[i] = entry.getKey();
+            counts[i++] = entry.getValue()[0];
+        }
+        return new TermVector(version, title, terms, counts, length[0]);
+    }
+
+    private void evict() {
+        Iterator<TermVector> iterator = vectors.values().iterator();
+        while (weight > maxWeight && iterator.hasNext()) {
+            weight -= iterator.next().weight();
+            iterator.remove();
+        }
+    }
+
+    public static class TermVector {
+        private final Long version;
+        private final String title;
+        private final String[] terms; // 每个词只出现一次
+        private final int[] frequencies; // 对应的词频
+        private final int length; // 词的总数
+
+        private TermVector(Long version, String title, String[] terms, int[] frequencies, int length) {
+            this.version = version;
+            this.title = title;
+            this.terms = terms;
+            this.frequencies = frequencies;
+            this.length = length;
+        }
+
+        private long weight() {
+            return terms.length + 1;
+        }
+
+        public String[] getTerms() { return terms; }
+        public int[] getFrequencies() { return frequencies; }
+        public int getLength() { return length; }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.multiuser_online_editing.service.document_management;
+
+import com.example.multiuser_online_editing.util.ContentText;
+import com.huaban.analysis.jieba.JiebaSegmenter;
+import com.huaban.analysis.jieba.SegToken;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * 搜索和聚类共用的文本分析器
+ * 处理过程：一次扫描去掉HTML标签并转为小写（ContentText） -> jieba分词 -> 逐字符过滤标点等字符 -> 过滤停用词和数字
+ * 分析结果以回调的方式逐个输出，不生成中间列表；分析器不保存任何词，搜索内容和文档再多也不会占用更多内存
+ */
+@Component
+public class TextAnalyzer {
+
+    public static final int MAX_TERM_LENGTH = 64; // 超过该长度的词不进入索引
+
+    private static final Set<String> STOP_WORDS = Set.of("the", "a", "an", "and", "or", "but", "in", "on", "at", "to", "for",
+            "of", "with", "by", "is", "are", "was", "were", "be", "been", "being",
+            "this", "that", "these", "those", "i", "you", "he", "she", "it", "we", "they",
+            "的", "了", "在", "是", "我", "有", "和", "就", "不", "人", "都", "一", "一个",
+            "上", "也", "很", "到", "说", "要", "去", "你", "会", "着", "没有", "看", "好",
+            "自己", "这", "那", "他", "她", "它", "我们", "你们", "他们");
+
+    private final JiebaSegmenter segmenter = new JiebaSegmenter(); // 中文分词器
+
+    @FunctionalInterface
+    public interface TokenConsumer {
+        /**
+         * @param term 词
+         * @param position 词在纯文本（analyze为ContentText.toPlainText的结果）中的起始字符位置
+         */
+        void accept(String term, int position);
+    }
+
+    /**
+     * 分析HTML文本（例如搜索内容），按出现顺序输出每个词（同一个词可以出现多次）
+     */
+    public void analyze(String html, TokenConsumer consumer) {
+        segment(ContentText.toLowerPlainText(html), consumer);
+    }
+
+    /**
+     * 分析已经提取好的纯文本（例如文档的plainText），词的位置是在该文本中的字符位置
+     */
+    public void analyzePlainText(String text, TokenConsumer consumer) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        char[] lowerText = new char[text.length()];
+        for (int i = 0; i < lowerText.length; ++i) {
+            lowerText[i] = Character.toLowerCase(text.charAt(i));
+        }
+        segment(new String(lowerText), consumer);
+    }
+
+    // 对已转为小写的纯文本分词并过滤
+    private void segment(String plainText, TokenConsumer consumer) {
+        if (plainText.isEmpty()) {
+            return;
+        }
+
+        char[] buffer = new char[MAX_TERM_LENGTH];
+        for (SegToken segToken : segmenter.process(plainText, JiebaSegmenter.SegMode.SEARCH)) {
+            String word = segToken.word;
+            if (word.length() <= 1) {
+                continue;
+            }
+
+            // 只保留字母、数字和常用汉字，全部保留时直接使用原来的字符串
+            int length = 0;
+            boolean changed = false;
+            for (int i = 0; i < word.length(); ++i) {
+                char c = word.charAt(i);
+                if (isTermChar(c)) {
+                    if (length == MAX_TERM_LENGTH) {
+                        length = MAX_TERM_LENGTH + 1;
+                        break;
+                    }
+                    buffer[length++] = c;
+                } else {
+                    changed = true;
+                }
+            }
+            if (length <= 1 || length > MAX_TERM_LENGTH) {
+                continue;
+            }
+
+            String term = changed ? new String(buffer, 0, length) : word;
+            if (STOP_WORDS.contains(term) || isNumeric(term)) {
+                continue;
+            }
+            consumer.accept(term, segToken.startOffset);
+        }
+    }
+
+    // a-z（已转为小写）、A-Z、0-9，以及常用汉字（\u4e00-\u9fa5是常用汉字的unicode码）
+    private static boolean isTermChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || (c >= '\u4e00' && c <= '\u9fa5');
+    }
+
+    // 与原来的正则表达式 [0-9]+(.[0-9]*)? 相同：数字开头，之后最多一个任意字符，再之后只有数字
+    private static boolean isNumeric(String str) {
+        int i = 0;
+        while (i < str.length() && str.charAt(i) >= '0' && str.charAt(i) <= '9') {
+            ++i;
+        }
+        if (i == 0) {
+            return false;
+        }
+        if (i < str.length()) {
+            ++i;
+        }
+        while (i < str.length()) {
+            if (str.charAt(i) < '0' || str.charAt(i) > '9') {
+                return false;
+            }
+            ++i;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.multiuser_online_editing.service.user_management;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 操作日志
+ * 业务代码只把日志事件放入有界的内存队列（在事务中调用时等到提交后才入队），后台定时把队列中的事件
+ * 以多行INSERT批量写入数据库，业务请求不再为写日志访问数据库。队列满时的处理方式可以配置
+ */
+@Service
+public class OperationLogService {
+
+    private static final Logger log = LoggerFactory.getLogger(OperationLogService.class);
+
+    private static final String INSERT_SQL_PREFIX =
+            "INSERT INTO operation_logs (user_id, operation, resource_type, resource_id, operation_time, details) VALUES ";
+    private static final String ROW_PLACEHOLDER = "(?, ?, ?, ?, ?, ?)";
+
+    public enum OverflowPolicy {
+        DROP_NEWEST, // 丢弃新的事件
+        DROP_OLDEST, // 丢弃队列中最早的事件
+        BLOCK // 阻塞调用方直到队列有空位
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.operation-log.queue-capacity}")
+    private int queueCapacity; // 队列最多容纳的事件数
+
+    @Value("${app.operation-log.batch-size}")
+    private int batchSize; // 一条INSERT语句最多写入的行数
+
+    @Value("${app.operation-log.overflow}")
+    private OverflowPolicy overflow; // 队列满时的处理方式
+
+    private ArrayBlockingQueue<Event> queue;
+
+    private final Object writeLock = new Object(); // 保证同一时刻只有一个线程在写入
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * 记录一条操作日志
+     */
+    public void log(Long userId, String operation, String resourceType, Long resourceId, String details) {
+        if (userId == null) {
+            return;
+        }
+        Event event = new Event(userId, operation, resourceType, resourceId, details,
+                Timestamp.valueOf(LocalDateTime.now()));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(event);
+                }
+            });
+        } else {
+            enqueue(event);
+        }
+    }
+
+    /**
+     * 定时把队列中的事件写入数据库
+     */
+    @Scheduled(fixedDelayString = "${app.operation-log.flush-interval-ms}")
+    public void flush() {
+        synchronized (writeLock) {
+            List<Event> batch = new ArrayList<>(batchSize);
+            while (queue.drainTo(batch, batchSize) > 0) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("queueDepth", queue.size());
+        metrics.put("queueCapacity", queueCapacity);
+        metrics.put("overflowPolicy", overflow);
+        metrics.put("enqueued", enqueued.get());
+        metrics.put("written", written.get());
+        metrics.put("dropped", dropped.get());
+        metrics.put("failed", failed.get());
+        return metrics;
+    }
+
+    private void enqueue(Event event) {
+        boolean accepted;
+        switch (overflow) {
+            case DROP_OLDEST:
+                accepted = queue.offer(event);
+                while (!accepted) {
+                    if (queue.poll() != null) {
+                        countDropped();
+                    }
+                    accepted = queue.offer(event);
+                }
+                break;
+            case BLOCK:
+                try {
+                    queue.put(event);
+                    accepted = true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    accepted = false;
+                }
+                break;
+            default:
+                accepted = queue.offer(event);
+        }
+
+        if (accepted) {
+            enqueued.incrementAndGet();
+        } else {
+            countDropped();
+        }
+    }
+
+    private void countDropped() {
+        long count = dropped.incrementAndGet();
+        if (count == 1 || count % 1000 == 0) {
+            log.warn("操作日志队列已满，累计丢弃{}条日志", count);
+        }
+    }
+
+    // 一批事件用一条多行INSERT写入；失败时（例如用户已被删除）逐条重试，只丢弃写不进去的那几条
+    private void write(List<Event> batch) {
+        try {
+            jdbcTemplate.update(insertSql(batch.size()), args(batch));
+            written.addAndGet(batch.size());
+            return;
+        } catch (RuntimeException e) {
+            log.warn("批量写入操作日志失败，改为逐条写入", e);
+        }
+
+        for (Event event : batch) {
+            try {
+                jdbcTemplate.update(insertSql(1), args(List.of(event)));
+                written.incrementAndGet();
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                log.error("写入操作日志失败: {} {}", event.operation, event.resourceId, e);
+            }
+        }
+    }
+
+    private static String insertSql(int rows) {
+        StringBuilder sql = new StringBuilder(INSERT_SQL_PREFIX);
+        for (int i = 0; i < rows; ++i) {
+            if (i > 0) sql.append(", ");
+            sql.append(ROW_PLACEHOLDER);
+        }
+        return sql.toString();
+    }
+
+    private static Object[] args(List<Event> events) {
+        Object[] args = new Object[events.size() * 6];
+        int i = 0;
+        for (Event event : events) {
+            args[i++] = event.userId;
+            args[i++] = event.operation;
+            args[i++] = event.resourceType;
+            args[i++] = event.resourceId;
+            args[i++] = event.time;
+            args[i++] = event.details;
+        }
+        return args;
+    }
+
+    private static class Event {
+        private final Long userId;
+        private final String operation;
+        private final String resourceType;
+        private final Long resourceId;
+        private final String details;
+        private final Timestamp time; // 操作发生的时间，而不是写入数据库的时间
+
+        private Event(Long userId, String operation, String resourceType, Long resourceId,
+                      String details, Timestamp time) {
+            this.userId = userId;
+            this.operation = operation;
+            this.resourceType = resourceType;
+            this.resourceId = resourceId;
+            this.details = details;
+            this.time = time;
+        }
+    }
+}
@@ -29,6 +29,9 @@ public class UserService {
     @Autowired
     private OperationLogRepository operationLogRepository;
 
+    @Autowired
+    private OperationLogService operationLogService;
+
     @Autowired
     private PasswordEncoder passwordEncoder;
 
@@ -72,7 +75,7 @@ public class UserService {
         User savedUser = userRepository.save(user);
 
         // 记录操作日志
-        logOperation(savedUser.getId(), "USER_REGISTER", "USER", savedUser.getId(), "User registered successfully");
+        operationLogService.log(savedUser.getId(), "USER_REGISTER", "USER", savedUser.getId(), "User registered successfully");
 
         return savedUser;
     }
@@ -106,7 +109,7 @@ public class UserService {
         User updatedUser = userRepository.save(user);
 
         // 记录操作日志
-        logOperation(userId, "UPDATE_PROFILE", "USER", userId, "User profile updated");
+        operationLogService.log(userId, "UPDATE_PROFILE", "USER", userId, "User profile updated");
 
         return updatedUser;
     }
@@ -160,7 +163,7 @@ public class UserService {
         userRepository.save(user);
 
         // 记录操作日志
-        logOperation(userId, "UPLOAD_AVATAR", "USER", userId, "Avatar uploaded");
+        operationLogService.log(userId, "UPLOAD_AVATAR", "USER", userId, "Avatar uploaded");
 
         return newFileName;
     }
@@ -189,7 +192,7 @@ public class UserService {
         userRepository.save(user);
 
         // 记录操作日志
-        logOperation(user.getId(), "RESET_PASSWORD", "USER", user.getId(), "Password reset");
+        operationLogService.log(user.getId(), "RESET_PASSWORD", "USER", user.getId(), "Password reset");
     }
 
     public User changeRole(Long userId, Role newRole) {
@@ -207,9 +210,9 @@ public class UserService {
 
         // 记录操作日志
         String currentUsername = SecurityContextHolder.getContext().getAuthentication().getName(); // 获取当前用户的用户名
-        logOperation(getCurrentUserId(), "CHANGE_ROLE", "USER", userId,
+        operationLogService.log(getCurrentUserId(), "CHANGE_ROLE", "USER", userId,
                 "Role changed from " + pre_role + " to " + newRole + " by " + currentUsername);
-        logOperation(userId, "CHANGE_ROLE", "USER", userId,
+        operationLogService.log(userId, "CHANGE_ROLE", "USER", userId,
                 "Role changed from " + pre_role + " to " + newRole + " by ADMIN");
 
         return updatedUser;
@@ -231,7 +234,7 @@ public class UserService {
         }
 
         // 记录操作日志（重复申请也要记录日志）
-        logOperation(userId, "REQUEST_ROLE_UPGRADE", "USER", userId, "Apply to upgrade the role to Editor");
+        operationLogService.log(userId, "REQUEST_ROLE_UPGRADE", "USER", userId, "Apply to upgrade the role to Editor");
     }
 
     // 获取所有申请升级角色的用户ID列表
@@ -248,18 +251,10 @@ public class UserService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
+        // 只读取已经写入数据库的日志，队列中尚未写入的日志在下次定时写入后可见
         return operationLogRepository.findByUserIdOrderByOperationTimeDesc(userId);
     }
 
-    public void logOperation(Long userId, String operation, String resourceType, Long resourceId, String details) {
-        User user = userRepository.findById(userId).orElse(null);
-        if (user != null) {
-            OperationLog log = new OperationLog(user, operation, resourceType, resourceId);
-            log.setDetails(details);
-            operationLogRepository.save(log);
-        }
-    }
-
     public Long getCurrentUserId() {
         String username = SecurityContextHolder.getContext().getAuthentication().getName();
         User user = userRepository.findByUsername(username).orElse(null);
@@ -0,0 +1,128 @@
+package com.example.multiuser_online_editing.util;
+
+/**
+ * 文档正文的纯文本处理
+ * 富文本文档的内容是HTML，列表、搜索等只需要其中的文字部分
+ */
+public final class ContentText {
+
+    public static final int SNIPPET_LENGTH = 200; // 摘要的最大字符数（包含省略号）
+
+    // 替换为空格的块级标签（标签名不区分大小写），其余标签直接去掉
+    private static final String[] BLOCK_TAGS = {"br", "/p", "/div", "/li", "/h1", "/h2", "/h3", "/h4", "/h5", "/h6",
+            "/tr", "/blockquote", "/pre"};
+
+    // 解码的实体及对应的字符
+    private static final String[] ENTITIES = {"&nbsp;", "&lt;", "&gt;", "&quot;", "&#39;", "&amp;"};
+    private static final char[] ENTITY_CHARS = {' ', '<', '>', '"', '\'', '&'};
+
+    private ContentText() {
+    }
+
+    /**
+     * 去掉HTML标签、解码常见实体并合并空白
+     */
+    public static String toPlainText(String content) {
+        return filter(content, false);
+    }
+
+    /**
+     * 与toPlainText相同，同时转为小写（供分词使用，字符位置与toPlainText的结果一一对应）
+     */
+    public static String toLowerPlainText(String content) {
+        return filter(content, true);
+    }
+
+    // 一次扫描完成去标签、解码实体、合并空白和转小写
+    // 标签为'<'到其后第一个'>'之间的部分；之后再没有'>'的'<'不构成标签，按普通字符保留
+    private static String filter(String content, boolean lowerCase) {
+        if (content == null || content.isEmpty()) {
+            return "";
+        }
+        StringBuilder text = new StringBuilder(content.length());
+        boolean pendingSpace = false; // 上一个输出的字符之后有空白，等下一个非空白字符出现时再输出一个空格
+        int close = -2; // 当前位置之后的第一个'>'，-1表示之后已经没有'>'，-2表示还未查找
+        int length = content.length();
+        int i = 0;
+        while (i < length) {
+            char c = content.charAt(i);
+            if (c == '<') {
+                if (close != -1 && close < i) {
+                    close = content.indexOf('>', i + 1);
+                }
+                if (close >= 0) {
+                    if (isBlockTag(content, i + 1, close)) {
+                        pendingSpace = true;
+                    }
+                    i = close + 1;
+                    continue;
+                }
+            } else if (c == '&') {
+                int entity = entityAt(content, i);
+                if (entity >= 0) {
+                    c = ENTITY_CHARS[entity];
+                    i += ENTITIES[entity].length() - 1;
+                }
+            }
+            ++i;
+
+            if (isWhitespace(c)) {
+                pendingSpace = true;
+                continue;
+            }
+            if (pendingSpace && text.length() > 0) {
+                text.append(' ');
+            }
+            pendingSpace = false;
+            text.append(lowerCase ? Character.toLowerCase(c) : c);
+        }
+        return text.toString();
+    }
+
+    // [start, end)为标签内容（不含尖括号），标签名之后是标签结束或者不属于标签名的字符
+    private static boolean isBlockTag(String content, int start, int end) {
+        for (String tag : BLOCK_TAGS) {
+            int nameEnd = start + tag.length();
+            if (nameEnd <= end && content.regionMatches(true, start, tag, 0, tag.length())
+                    && (nameEnd == end || !Character.isLetterOrDigit(content.charAt(nameEnd)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int entityAt(String content, int start) {
+        for (int i = 0; i < ENTITIES.length; ++i) {
+            if (content.startsWith(ENTITIES[i], start)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // 与正则表达式中的\s相同
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * 文档列表中展示的摘要，超长时截断并以省略号结尾
+     */
+    public static String snippet(String content) {
+        return plainSnippet(toPlainText(content));
+    }
+
+    /**
+     * 由已经提取好的纯文本生成摘要
+     */
+    public static String plainSnippet(String text) {
+        if (text.length() <= SNIPPET_LENGTH) {
+            return text;
+        }
+        int end = SNIPPET_LENGTH - 3;
+        if (Character.isHighSurrogate(text.charAt(end - 1))) {
+            --end; // 不把代理对截成两半
+        }
+        return text.substring(0, end) + "...";
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.multiuser_online_editing.util;
+
+import java.util.Arrays;
+
+/**
+ * 倒排项中词位置的编码：位置按升序排列后保存相邻位置的差值，每个差值用变长整数编码
+ * （每字节低7位为数据，最高位为1表示后面还有字节），相邻位置通常很近，大多数差值只占1~2个字节
+ */
+public class PositionCodec {
+
+    private PositionCodec() {
+    }
+
+    /**
+     * 编码positions的前count个位置（会对这部分排序）
+     */
+    public static byte[] encode(int[] positions, int count) {
+        Arrays.sort(positions, 0, count);
+        byte[] bytes = new byte[count * 5]; // 一个int最多占5个字节
+        int length = 0;
+        int previous = 0;
+        for (int i = 0; i < count; ++i) {
+            int delta = positions[i] - previous;
+            previous = positions[i];
+            while ((delta & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            bytes[length++] = (byte) delta;
+        }
+        return Arrays.copyOf(bytes, length);
+    }
+
+    /**
+     * 解码得到按升序排列的位置
+     */
+    public static int[] decode(byte[] bytes) {
+        int[] positions = new int[bytes.length]; // 每个位置至少占1个字节
+        int count = 0;
+        int position = 0;
+        int i = 0;
+        while (i < bytes.length) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[i++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0 && i < bytes.length);
+            position += delta;
+            positions[count++] = position;
+        }
+        return Arrays.copyOf(positions, count);
+    }
+}
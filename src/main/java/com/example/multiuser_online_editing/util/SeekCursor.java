@@ -0,0 +1,47 @@
+package com.example.multiuser_online_editing.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * 按 (updatedAt, id) 倒序翻页的游标
+ * 对客户端是不透明的字符串，内容为上一页最后一篇文档的更新时间和ID
+ */
+public class SeekCursor {
+
+    // 第一页的游标：排在所有文档之前
+    public static final SeekCursor FIRST = new SeekCursor(LocalDateTime.of(9999, 12, 31, 23, 59, 59), Long.MAX_VALUE);
+
+    private final LocalDateTime updatedAt;
+    private final Long id;
+
+    public SeekCursor(LocalDateTime updatedAt, Long id) {
+        this.updatedAt = updatedAt;
+        this.id = id;
+    }
+
+    public String encode() {
+        String raw = updatedAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // 游标为空时返回第一页的游标
+    public static SeekCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return FIRST;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            return new SeekCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new RuntimeException("无效的分页游标");
+        }
+    }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public Long getId() { return id; }
+}
@@ -0,0 +1,134 @@
+package com.example.multiuser_online_editing.util;
+
+import com.example.multiuser_online_editing.entity.user_management.Role;
+import com.example.multiuser_online_editing.service.collaboration.DocumentAccessCache;
+import com.example.multiuser_online_editing.service.user_management.UserDetailsImpl;
+import com.example.multiuser_online_editing.service.user_management.UserDetailsServiceImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.security.Principal;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * STOMP消息拦截器，同时注册在入站和出站通道上
+ * CONNECT时根据JWT认证用户并绑定到WebSocket会话；SUBSCRIBE/SEND到文档相关目的地时检查文档访问权限
+ * （结果按会话缓存），查看者发送编辑操作时拒绝；向会话推送文档消息（MESSAGE）前再次检查，
+ * 协作者被移除或文档被删除后，已有的订阅不再收到消息，消息处理方法可以直接从Principal获取用户，无需每条消息都查询数据库
+ */
+@Component
+public class StompAuthChannelInterceptor implements ChannelInterceptor {
+
+    // 匹配 /app/document/{id}/** 和 /topic/document/{id}/**
+    private static final Pattern DOCUMENT_DESTINATION = Pattern.compile("^/(app|topic)/document/(\\d+)(/.*)?$");
+
+    // 提交编辑操作的目的地，查看者不能发送
+    private static final String CONTENT_SUFFIX = "/content";
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Autowired
+    private DocumentAccessCache documentAccessCache;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+
+        StompCommand command = accessor.getCommand();
+        if (command == StompCommand.CONNECT) {
+            accessor.setUser(authenticate(accessor.getFirstNativeHeader("Authorization")));
+        } else if (command == StompCommand.SUBSCRIBE || command == StompCommand.SEND) {
+            checkDocumentAccess(accessor);
+        } else if (command == StompCommand.MESSAGE && !isDeliverable(accessor)) {
+            return null; // 丢弃这条推送
+        }
+        return message;
+    }
+
+    private Principal authenticate(String headerAuth) {
+        if (!StringUtils.hasText(headerAuth) || !headerAuth.startsWith("Bearer ")) {
+            throw new RuntimeException("未登录");
+        }
+
+        String jwt = headerAuth.substring(7);
+        if (!jwtUtils.validateJwtToken(jwt)) {
+            throw new RuntimeException("登录已过期，请重新登录");
+        }
+
+        UserDetailsImpl userDetails =
+                (UserDetailsImpl) userDetailsService.loadUserByUsername(jwtUtils.getUserNameFromJwtToken(jwt));
+        return new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+    }
+
+    private void checkDocumentAccess(StompHeaderAccessor accessor) {
+        String destination = accessor.getDestination();
+        if (destination == null) {
+            return;
+        }
+        Matcher matcher = DOCUMENT_DESTINATION.matcher(destination);
+        if (!matcher.matches()) {
+            return;
+        }
+
+        Long userId = getUserId(accessor.getUser());
+        if (userId == null) {
+            throw new RuntimeException("未登录");
+        }
+
+        Long documentId = Long.valueOf(matcher.group(2));
+        if (!documentAccessCache.isAllowed(accessor.getSessionId(), documentId, userId)) {
+            throw new RuntimeException("无权访问此文档");
+        }
+
+        // 与REST接口一致，查看者只能订阅文档，不能提交编辑操作（角色在CONNECT时随用户一起绑定到会话）
+        if (accessor.getCommand() == StompCommand.SEND && "app".equals(matcher.group(1))
+                && CONTENT_SUFFIX.equals(matcher.group(3)) && isViewer(accessor.getUser())) {
+            throw new RuntimeException("您当前的角色为查看者，请向系统管理员申请升级为编辑者，并在申请通过后，再进行文档编辑");
+        }
+    }
+
+    private static boolean isViewer(Principal principal) {
+        return principal instanceof UsernamePasswordAuthenticationToken authentication &&
+                authentication.getAuthorities().stream()
+                        .anyMatch(authority -> ("ROLE_" + Role.VIEWER.name()).equals(authority.getAuthority()));
+    }
+
+    private boolean isDeliverable(StompHeaderAccessor accessor) {
+        String destination = accessor.getDestination();
+        if (destination == null) {
+            return true;
+        }
+        Matcher matcher = DOCUMENT_DESTINATION.matcher(destination);
+        if (!matcher.matches()) {
+            return true;
+        }
+        return documentAccessCache.isDeliverable(accessor.getSessionId(), Long.valueOf(matcher.group(2)));
+    }
+
+    /**
+     * 从WebSocket会话绑定的Principal中取出用户ID
+     */
+    public static Long getUserId(Principal principal) {
+        if (principal instanceof UsernamePasswordAuthenticationToken authentication &&
+                authentication.getPrincipal() instanceof UserDetailsImpl userDetails) {
+            return userDetails.getId();
+        }
+        return null;
+    }
+}
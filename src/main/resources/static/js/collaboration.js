@@ -14,10 +14,11 @@ const collaborationAPI = {
     },
 
     // 离开文档协作
-    async leaveDocument(documentId) {
+    async leaveDocument(documentId, sessionId) {
         try {
             const response = await apiRequest(`/collaboration/${documentId}/leave`, {
-                method: 'POST'
+                method: 'POST',
+                body: JSON.stringify({ sessionId })
             });
             return response;
         } catch (error) {
@@ -35,7 +36,29 @@ const collaborationAPI = {
                 console.error('获取在线用户错误:', error);
                 throw error;
             }
+        },
+
+    // 获取指定版本之后的操作（落后太多时返回完整内容）
+    async catchUp(documentId, version) {
+        try {
+            const response = await apiRequest(`/collaboration/${documentId}/catch-up?version=${version}`);
+            return response;
+        } catch (error) {
+            console.error('获取文档更新错误:', error);
+            throw error;
         }
+    },
+
+    // 获取文档当前的内容和版本号
+    async getSnapshot(documentId) {
+        try {
+            const response = await apiRequest(`/collaboration/${documentId}/snapshot`);
+            return response;
+        } catch (error) {
+            console.error('获取文档快照错误:', error);
+            throw error;
+        }
+    }
 };
 
 const commentAPI = {
@@ -237,6 +260,7 @@ class CollaborationWebSocket {
         this.connected = false;
         this.subscriptions = new Map();
         this.pendingSubscriptions = new Map(); // 保存订阅信息
+        this.connectListeners = []; // 每次连接（包括重连）成功后的回调
     }
 
     // 连接WebSocket
@@ -244,12 +268,15 @@ class CollaborationWebSocket {
         const socket = new SockJS('/ws');
         this.stompClient = Stomp.over(socket);
 
-        this.stompClient.connect({}, (frame) => {
+        // 连接时携带JWT，服务端据此认证用户并检查文档访问权限
+        const headers = { Authorization: `Bearer ${getToken()}` };
+        this.stompClient.connect(headers, (frame) => {
             console.log('WebSocket连接成功:', frame);
             this.connected = true;
 
             // 连接成功后重新订阅所有之前的订阅
             this.resubscribeAll();
+            this.connectListeners.forEach(callback => callback());
         }, (error) => {
             console.error('WebSocket连接失败:', error);
             this.connected = false;
@@ -259,6 +286,11 @@ class CollaborationWebSocket {
         });
     }
 
+    // 注册连接成功后的回调
+    onConnect(callback) {
+        this.connectListeners.push(callback);
+    }
+
     // 订阅主题
     subscribe(destination, callback) {
         // 保存订阅信息，即使未连接也可以保存
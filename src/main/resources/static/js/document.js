@@ -41,12 +41,12 @@ const documentAPI = {
         }
     },
 
-    // 自动保存文档
-    async autoSaveDocument(documentId, content) {
+    // 自动保存文档：draft为相对于某个版本的差异操作 { baseVersion, operation }，没有时提交完整内容
+    async autoSaveDocument(documentId, content, draft = null) {
         try {
             const response = await apiRequest(`/documents/${documentId}/auto-save`, {
                 method: 'POST',
-                body: JSON.stringify({ content })
+                body: JSON.stringify(draft ? draft : { content })
             });
             return response;
         } catch (error) {
@@ -107,6 +107,47 @@ const documentAPI = {
         }
     },
 
+    // 高级搜索（作为所有者，键集分页：传入上一页返回的nextCursor获取下一页）
+    async advancedSearchOwnerSeek(searchParams, cursor = null) {
+        try {
+            const queryParams = new URLSearchParams();
+            if (searchParams.title) queryParams.append('title', searchParams.title);
+            if (searchParams.content) queryParams.append('content', searchParams.content);
+            if (searchParams.startDate) queryParams.append('startDate', searchParams.startDate);
+            if (searchParams.endDate) queryParams.append('endDate', searchParams.endDate);
+            if (searchParams.tagName) queryParams.append('tagName', searchParams.tagName);
+            if (searchParams.size) queryParams.append('size', searchParams.size);
+            if (cursor) queryParams.append('cursor', cursor);
+
+            const response = await apiRequest(`/documents/advanced-search-owner-seek?${queryParams}`);
+            return response;
+        } catch (error) {
+            console.error('高级搜索错误:', error);
+            throw error;
+        }
+    },
+
+    // 高级搜索（作为协作者，键集分页）
+    async advancedSearchCollaboratorSeek(searchParams, cursor = null) {
+        try {
+            const queryParams = new URLSearchParams();
+            if (searchParams.title) queryParams.append('title', searchParams.title);
+            if (searchParams.content) queryParams.append('content', searchParams.content);
+            if (searchParams.ownerUsername) queryParams.append('ownerUsername', searchParams.ownerUsername);
+            if (searchParams.startDate) queryParams.append('startDate', searchParams.startDate);
+            if (searchParams.endDate) queryParams.append('endDate', searchParams.endDate);
+            if (searchParams.tagName) queryParams.append('tagName', searchParams.tagName);
+            if (searchParams.size) queryParams.append('size', searchParams.size);
+            if (cursor) queryParams.append('cursor', cursor);
+
+            const response = await apiRequest(`/documents/advanced-search-collaborator-seek?${queryParams}`);
+            return response;
+        } catch (error) {
+            console.error('高级搜索错误:', error);
+            throw error;
+        }
+    },
+
     // 添加协作者
     async addCollaborator(documentId, userId) {
         try {
@@ -169,6 +210,21 @@ const documentAPI = {
         }
     },
 
+    // 获取根目录下的文档（键集分页）
+    async getRootDocumentsSeek(cursor = null, size = 20) {
+        try {
+            const queryParams = new URLSearchParams();
+            queryParams.append('size', size);
+            if (cursor) queryParams.append('cursor', cursor);
+
+            const response = await apiRequest(`/documents/root-documents-seek?${queryParams}`);
+            return response;
+        } catch (error) {
+            console.error('获取根目录文档错误:', error);
+            throw error;
+        }
+    },
+
     // 获取回收站中的文档
     async getRecycleBinDocuments() {
         try {
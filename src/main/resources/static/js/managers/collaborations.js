@@ -1,3 +1,118 @@
+// 文本操作（与服务端TextOperation格式一致）：正整数表示保留若干字符，负整数表示删除若干字符，字符串表示插入
+const textOperation = {
+    retain(ops, n) {
+        if (n <= 0) return;
+        const last = ops[ops.length - 1];
+        if (typeof last === 'number' && last > 0) ops[ops.length - 1] = last + n;
+        else ops.push(n);
+    },
+
+    insert(ops, str) {
+        if (!str) return;
+        const last = ops[ops.length - 1];
+        if (typeof last === 'string') {
+            ops[ops.length - 1] = last + str;
+        } else if (typeof last === 'number' && last < 0) {
+            // 保证插入总是出现在删除之前
+            if (typeof ops[ops.length - 2] === 'string') ops[ops.length - 2] += str;
+            else ops.splice(ops.length - 1, 0, str);
+        } else {
+            ops.push(str);
+        }
+    },
+
+    delete(ops, n) {
+        if (n <= 0) return;
+        const last = ops[ops.length - 1];
+        if (typeof last === 'number' && last < 0) ops[ops.length - 1] = last - n;
+        else ops.push(-n);
+    },
+
+    isNoop(ops) {
+        return ops.length === 0 || (ops.length === 1 && typeof ops[0] === 'number' && ops[0] > 0);
+    },
+
+    apply(text, ops) {
+        let result = '';
+        let index = 0;
+        for (const op of ops) {
+            if (typeof op === 'string') {
+                result += op;
+            } else if (op > 0) {
+                result += text.substring(index, index + op);
+                index += op;
+            } else {
+                index -= op;
+            }
+        }
+        return result;
+    },
+
+    // 变换两个基于同一文本的并发操作，返回[a', b']
+    transform(ops1, ops2) {
+        const aPrime = [];
+        const bPrime = [];
+        let i1 = 0, i2 = 0;
+        let o1 = ops1[i1++], o2 = ops2[i2++];
+
+        while (o1 !== undefined || o2 !== undefined) {
+            if (typeof o1 === 'string') {
+                this.insert(aPrime, o1);
+                this.retain(bPrime, o1.length);
+                o1 = ops1[i1++];
+                continue;
+            }
+            if (typeof o2 === 'string') {
+                this.retain(aPrime, o2.length);
+                this.insert(bPrime, o2);
+                o2 = ops2[i2++];
+                continue;
+            }
+
+            let min;
+            if (o1 > 0 && o2 > 0) {
+                min = Math.min(o1, o2);
+                this.retain(aPrime, min);
+                this.retain(bPrime, min);
+            } else if (o1 < 0 && o2 < 0) {
+                min = Math.min(-o1, -o2);
+            } else if (o1 < 0) {
+                min = Math.min(-o1, o2);
+                this.delete(aPrime, min);
+            } else {
+                min = Math.min(o1, -o2);
+                this.delete(bPrime, min);
+            }
+
+            o1 = o1 > 0 ? o1 - min : o1 + min;
+            o2 = o2 > 0 ? o2 - min : o2 + min;
+            if (o1 === 0) o1 = ops1[i1++];
+            if (o2 === 0) o2 = ops2[i2++];
+        }
+
+        return [aPrime, bPrime];
+    },
+
+    // 计算把oldText变为newText的操作（去掉公共前缀和后缀）
+    diff(oldText, newText) {
+        let prefix = 0;
+        const maxPrefix = Math.min(oldText.length, newText.length);
+        while (prefix < maxPrefix && oldText[prefix] === newText[prefix]) prefix++;
+
+        let suffix = 0;
+        const maxSuffix = maxPrefix - prefix;
+        while (suffix < maxSuffix &&
+            oldText[oldText.length - 1 - suffix] === newText[newText.length - 1 - suffix]) suffix++;
+
+        const ops = [];
+        this.retain(ops, prefix);
+        this.insert(ops, newText.substring(prefix, newText.length - suffix));
+        this.delete(ops, oldText.length - prefix - suffix);
+        this.retain(ops, suffix);
+        return ops;
+    }
+};
+
 class CollaborationManager {
     constructor() {
         this.currentDocumentId = null;
@@ -5,6 +120,16 @@ class CollaborationManager {
         this.onlineUsers = new Map();
         this.cursorTimeouts = new Map();
         this.isCollaborator = false;
+        this.sessionId = null;
+        this.heartbeatTimer = null;
+
+        // 实时同步状态
+        this.clientId = this.generateSessionId();
+        this.serverVersion = null; // 已知的服务端版本号
+        this.serverText = null; // 服务端在serverVersion时的文档内容
+        this.outstanding = null; // 已发送但尚未被服务端确认的操作
+        this.catchingUp = false; // 是否正在追赶断线期间的操作
+        this.pendingMessages = []; // 追赶期间收到的广播
     }
 
     // 初始化协作功能
@@ -23,9 +148,15 @@ class CollaborationManager {
         // 设置WebSocket订阅
         this.setupWebSocketSubscriptions();
 
+        // 重连后只追赶断线期间的操作，而不是重新下载整篇文档
+        collaborationSocket.onConnect(() => this.handleReconnect());
+
         // 加载在线用户
         await this.loadOnlineUsers();
 
+        // 定时发送在线心跳
+        this.startHeartbeat();
+
         // 设置协作相关的事件监听器
         this.setupCollaborationEventListeners();
     }
@@ -33,8 +164,8 @@ class CollaborationManager {
     // 加入文档协作
     async joinDocument() {
         try {
-            const sessionId = this.generateSessionId();
-            const response = await collaborationAPI.joinDocument(this.currentDocumentId, sessionId);
+            this.sessionId = this.generateSessionId();
+            const response = await collaborationAPI.joinDocument(this.currentDocumentId, this.sessionId);
 
             if (response.success) {
                 console.log('成功加入文档协作');
@@ -49,7 +180,7 @@ class CollaborationManager {
     async leaveDocument() {
         if (this.isCollaborator) {
             try {
-                await collaborationAPI.leaveDocument(this.currentDocumentId);
+                await collaborationAPI.leaveDocument(this.currentDocumentId, this.sessionId);
                 this.isCollaborator = false;
             } catch (error) {
                 console.error('离开文档协作失败:', error);
@@ -64,6 +195,11 @@ class CollaborationManager {
             this.handleContentUpdate(message);
         });
 
+        // 订阅自己提交的操作被拒绝的通知（只发给提交者）
+        collaborationSocket.subscribe(`/user/queue/document/${this.currentDocumentId}/rejections`, (message) => {
+            this.handleContentUpdate(message);
+        });
+
         // 订阅光标更新
         collaborationSocket.subscribe(`/topic/document/${this.currentDocumentId}/cursors`, (message) => {
             this.handleCursorUpdate(message);
@@ -96,22 +232,154 @@ class CollaborationManager {
         });
     }
 
-    // 处理内容更新
+    // 从服务端获取文档的权威内容和版本号
+    // keepLocalContent为true时保留编辑器中的内容，并将其与服务端内容的差异作为操作提交
+    async syncFromServer(keepLocalContent = false) {
+        try {
+            const response = await collaborationAPI.getSnapshot(this.currentDocumentId);
+            if (!response.success) return;
+
+            this.serverText = response.data.content || '';
+            this.serverVersion = response.data.version;
+            this.outstanding = null;
+
+            if (keepLocalContent) {
+                this.sendContentUpdate(this.getEditorContent());
+            } else {
+                this.setEditorContent(this.serverText);
+            }
+        } catch (error) {
+            console.error('同步文档内容失败:', error);
+        }
+    }
+
+    // WebSocket连接（重连）成功
+    handleReconnect() {
+        this.sendHeartbeat();
+        if (this.serverVersion !== null) {
+            this.catchUp();
+        }
+    }
+
+    // 向服务端获取已知版本之后的操作并依次应用，落后太多时服务端直接返回完整内容
+    async catchUp() {
+        if (this.catchingUp) return;
+        this.catchingUp = true;
+        this.pendingMessages = [];
+
+        try {
+            const response = await collaborationAPI.catchUp(this.currentDocumentId, this.serverVersion);
+            if (!response.success) {
+                await this.syncFromServer();
+            } else if (response.data.type === 'snapshot') {
+                this.serverText = response.data.content || '';
+                this.serverVersion = response.data.version;
+                this.outstanding = null;
+                this.setEditorContent(this.serverText);
+            } else {
+                response.data.operations.forEach(message => this.applyServerMessage(message));
+
+                // 断线前发送的操作没有到达服务端，与之后的本地修改一起重新发送
+                if (this.outstanding) {
+                    this.outstanding = null;
+                    this.sendContentUpdate(this.getEditorContent());
+                }
+            }
+        } catch (error) {
+            console.error('追赶文档更新失败:', error);
+        } finally {
+            this.catchingUp = false;
+            const pending = this.pendingMessages;
+            this.pendingMessages = [];
+            pending.forEach(message => this.applyServerMessage(message));
+        }
+    }
+
+    // 处理内容更新（服务端广播的操作）
     handleContentUpdate(message) {
-        // 忽略自己发送的更新
-        if (message.userId === this.currentUserId) return;
+        if (this.serverText === null) return;
 
-        const content = message.content;
+        // 追赶期间收到的广播先缓存，追赶完成后再处理
+        if (this.catchingUp) {
+            this.pendingMessages.push(message);
+            return;
+        }
+        this.applyServerMessage(message);
+    }
 
-        // 根据文档类型更新内容
+    applyServerMessage(message) {
+        if (message.type === 'rejected') {
+            if (message.clientId === this.clientId) {
+                console.warn('操作被服务端拒绝，重新同步文档:', message.message);
+                this.syncFromServer();
+            }
+            return;
+        }
+
+        // 已经处理过的操作（追赶时可能重复收到）
+        if (message.version <= this.serverVersion) return;
+
+        // 漏收了部分操作，重新同步
+        if (message.version !== this.serverVersion + 1) {
+            this.syncFromServer();
+            return;
+        }
+
+        // 服务端对自己操作的确认
+        if (message.clientId === this.clientId) {
+            this.serverText = textOperation.apply(this.serverText, message.operation);
+            this.serverVersion = message.version;
+            this.outstanding = null;
+
+            // 发送等待期间产生的本地修改
+            this.sendContentUpdate(this.getEditorContent());
+            return;
+        }
+
+        // 其他协作者的操作：依次与已发送未确认的操作、尚未发送的本地修改进行变换后应用到编辑器
+        const localText = this.getEditorContent();
+        const sentText = this.outstanding ? textOperation.apply(this.serverText, this.outstanding) : this.serverText;
+        const unsent = textOperation.diff(sentText, localText);
+
+        this.serverText = textOperation.apply(this.serverText, message.operation);
+        this.serverVersion = message.version;
+
+        let remote = message.operation;
+        if (this.outstanding) {
+            [this.outstanding, remote] = textOperation.transform(this.outstanding, remote);
+        }
+        remote = textOperation.transform(unsent, remote)[1];
+
+        this.setEditorContent(textOperation.apply(localText, remote));
+    }
+
+    // 自动保存草稿：内容相对于已知服务端版本的差异操作，尚未同步时返回null
+    getDraftOperation(content) {
+        if (this.serverText === null) return null;
+        return {
+            baseVersion: this.serverVersion,
+            operation: textOperation.diff(this.serverText, content)
+        };
+    }
+
+    // 获取编辑器中的内容
+    getEditorContent() {
         if (window.currentDocumentType === 'RICH_TEXT' && window.quill) {
-            const currentContent = window.quill.root.innerHTML;
-            if (currentContent !== content) {
+            return window.quill.root.innerHTML;
+        } else if (window.currentDocumentType === 'MARKDOWN' && window.easyMDE) {
+            return window.easyMDE.value();
+        }
+        return '';
+    }
+
+    // 设置编辑器中的内容
+    setEditorContent(content) {
+        if (window.currentDocumentType === 'RICH_TEXT' && window.quill) {
+            if (window.quill.root.innerHTML !== content) {
                 window.quill.root.innerHTML = content;
             }
         } else if (window.currentDocumentType === 'MARKDOWN' && window.easyMDE) {
-            const currentContent = window.easyMDE.value();
-            if (currentContent !== content) {
+            if (window.easyMDE.value() !== content) {
                 window.easyMDE.value(content);
                 if (window.updateMarkdownPreview) {
                     window.updateMarkdownPreview();
@@ -120,15 +388,14 @@ class CollaborationManager {
         }
     }
 
-    // 处理光标更新
-    handleCursorUpdate(message) {
-        // 忽略自己发送的光标更新
-        if (message.userId === this.currentUserId) return;
-
-        const position = message.position;
-        const userId = message.userId;
+    // 处理光标更新：服务端按固定频率把多个用户的最新光标位置合并为一条消息
+    handleCursorUpdate(cursors) {
+        cursors.forEach(cursor => {
+            // 忽略自己的光标
+            if (cursor.userId === this.currentUserId) return;
 
-        this.showUserCursor(userId, position);
+            this.showUserCursor(cursor.userId, cursor.position);
+        });
     }
 
     // 显示用户光标
@@ -292,12 +559,20 @@ class CollaborationManager {
     }
 
 
-    // 处理在线用户更新
-    handleOnlineUsersUpdate(users) {
-        this.onlineUsers.clear();
-        users.forEach(user => {
-            this.onlineUsers.set(user.id, user);
-        });
+    // 处理在线用户更新：数组为完整的在线列表，否则为单个用户上线(JOINED)或下线(LEFT)的增量通知
+    handleOnlineUsersUpdate(message) {
+        if (Array.isArray(message)) {
+            this.onlineUsers.clear();
+            message.forEach(user => {
+                this.onlineUsers.set(user.id, user);
+            });
+        } else if (message.type === 'JOINED') {
+            this.onlineUsers.set(message.user.id, message.user);
+        } else if (message.type === 'LEFT') {
+            this.onlineUsers.delete(message.user.id);
+            const cursorIndicator = document.getElementById(`cursor-${message.user.id}`);
+            if (cursorIndicator) cursorIndicator.remove();
+        }
         this.updateOnlineUsersDisplay();
     }
 
@@ -360,16 +635,45 @@ class CollaborationManager {
         }
     }
 
-    // 发送内容更新
+    // 发送内容更新：只发送相对于服务端内容的差异操作，同一时刻最多只有一个等待确认的操作
     sendContentUpdate(content) {
         if (!this.isCollaborator || !collaborationSocket.isConnected()) return;
+        if (this.serverText === null || this.outstanding) return;
+
+        const operation = textOperation.diff(this.serverText, content);
+        if (textOperation.isNoop(operation)) return;
 
         const message = {
-            content: content,
-            userId: this.currentUserId
+            baseVersion: this.serverVersion,
+            operation: operation,
+            clientId: this.clientId
         };
 
-        collaborationSocket.send(`/app/document/${this.currentDocumentId}/content`, message);
+        if (collaborationSocket.send(`/app/document/${this.currentDocumentId}/content`, message)) {
+            this.outstanding = operation;
+        }
+    }
+
+    // 定时发送心跳，服务端据此维持在线状态，并在WebSocket断开时让当前会话下线
+    startHeartbeat() {
+        this.stopHeartbeat();
+        this.sendHeartbeat();
+        this.heartbeatTimer = setInterval(() => this.sendHeartbeat(), 15000);
+    }
+
+    stopHeartbeat() {
+        if (this.heartbeatTimer) {
+            clearInterval(this.heartbeatTimer);
+            this.heartbeatTimer = null;
+        }
+    }
+
+    sendHeartbeat() {
+        if (!this.isCollaborator || !collaborationSocket.isConnected()) return;
+
+        collaborationSocket.send(`/app/document/${this.currentDocumentId}/heartbeat`, {
+            sessionId: this.sessionId
+        });
     }
 
     // 发送光标更新
@@ -377,8 +681,7 @@ class CollaborationManager {
         if (!this.isCollaborator || !collaborationSocket.isConnected()) return;
 
         const message = {
-            position: position,
-            userId: this.currentUserId
+            position: position
         };
 
         collaborationSocket.send(`/app/document/${this.currentDocumentId}/cursor`, message);
@@ -438,6 +741,7 @@ class CollaborationManager {
 
     // 清理资源
     cleanup() {
+        this.stopHeartbeat();
         this.leaveDocument();
         this.onlineUsers.clear();
         this.cursorTimeouts.forEach(timeout => clearTimeout(timeout));
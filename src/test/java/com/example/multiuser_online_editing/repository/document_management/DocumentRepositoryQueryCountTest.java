@@ -0,0 +1,162 @@
+package com.example.multiuser_online_editing.repository.document_management;
+
+import com.example.multiuser_online_editing.entity.document_management.Document;
+import com.example.multiuser_online_editing.entity.document_management.Folder;
+import com.example.multiuser_online_editing.entity.document_management.Tag;
+import com.example.multiuser_online_editing.entity.user_management.User;
+import com.example.multiuser_online_editing.util.SeekCursor;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 文档列表查询的SQL语句数不随文档、协作者和标签的数量增长
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class DocumentRepositoryQueryCountTest {
+
+    private static final int DOCUMENTS = 30;
+    private static final int COLLABORATORS = 5;
+    private static final int TAGS = 4;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    private Statistics statistics;
+    private User owner;
+    private Folder folder;
+
+    @BeforeEach
+    void setUp() {
+        owner = persistUser("owner");
+        List<User> collaborators = new ArrayList<>();
+        for (int i = 0; i < COLLABORATORS; ++i)
+            collaborators.add(persistUser("collaborator" + i));
+        List<Tag> tags = new ArrayList<>();
+        for (int i = 0; i < TAGS; ++i) {
+            Tag tag = new Tag();
+            tag.setName("tag" + i);
+            tag.setOwner(owner);
+            entityManager.persist(tag);
+            tags.add(tag);
+        }
+
+        Folder parent = new Folder();
+        parent.setName("parent");
+        parent.setOwner(owner);
+        entityManager.persist(parent);
+        folder = new Folder();
+        folder.setName("child");
+        folder.setOwner(owner);
+        folder.setParent(parent);
+        entityManager.persist(folder);
+
+        for (int i = 0; i < DOCUMENTS; ++i) {
+            Document document = new Document();
+            document.setTitle("document" + i);
+            document.setContent("<p>content " + i + "</p>");
+            document.setSnippet("content " + i);
+            document.setOwner(owner);
+            document.setFolder(i % 2 == 0 ? null : folder);
+            document.setCollaborators(new ArrayList<>(collaborators));
+            document.setTags(new ArrayList<>(tags));
+            entityManager.persist(document);
+        }
+
+        entityManager.flush();
+        entityManager.clear();
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void folderListingUsesTwoStatements() {
+        List<DocumentSummary> summaries = documentRepository.findFolderSummaries(owner, folder);
+        assertEquals(DOCUMENTS / 2, summaries.size());
+        for (DocumentSummary summary : summaries)
+            assertEquals(COLLABORATORS, summary.getCollaboratorsCount());
+
+        List<Long> ids = new ArrayList<>();
+        for (DocumentSummary summary : summaries)
+            ids.add(summary.getId());
+        assertEquals(DOCUMENTS / 2 * TAGS, documentRepository.findTagNamesByDocumentIds(ids).size());
+
+        // 摘要(含所有者、文件夹和协作者数) + 所有文档的标签一条
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void summaryListingUsesTwoStatements() {
+        List<DocumentSummary> summaries = documentRepository.findRootSummaries(owner);
+        assertEquals(DOCUMENTS / 2, summaries.size());
+        assertEquals(COLLABORATORS, summaries.get(0).getCollaboratorsCount());
+
+        List<Long> ids = new ArrayList<>();
+        for (DocumentSummary summary : summaries)
+            ids.add(summary.getId());
+        assertEquals(DOCUMENTS / 2 * TAGS, documentRepository.findTagNamesByDocumentIds(ids).size());
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void advancedSearchPageUsesTwoStatements() {
+        Page<DocumentSummary> page = documentRepository.advancedSearch_isOwner(null, null, null, null, null, null,
+                owner, "tag0", PageRequest.of(0, 10, Sort.by("updatedAt").descending()));
+        assertEquals(10, page.getContent().size());
+        assertEquals(DOCUMENTS, page.getTotalElements());
+
+        // 分页查询 + 计数查询
+        assertTrue(statistics.getPrepareStatementCount() <= 2,
+                "执行了" + statistics.getPrepareStatementCount() + "条SQL");
+    }
+
+    @Test
+    void seekPagesVisitEveryDocumentOnceWithoutCount() {
+        Set<Long> seen = new HashSet<>();
+        SeekCursor cursor = SeekCursor.FIRST;
+        int pages = 0;
+        while (true) {
+            List<DocumentSummary> page = documentRepository.seekRootSummaries(owner,
+                    cursor.getUpdatedAt(), cursor.getId(), PageRequest.of(0, 4));
+            if (page.isEmpty())
+                break;
+            for (DocumentSummary summary : page)
+                assertTrue(seen.add(summary.getId()));
+            DocumentSummary last = page.get(page.size() - 1);
+            cursor = SeekCursor.decode(new SeekCursor(last.getUpdatedAt(), last.getId()).encode());
+            ++pages;
+        }
+
+        assertEquals(DOCUMENTS / 2, seen.size());
+        // 每页一条查询，没有计数查询
+        assertEquals(pages + 1, statistics.getPrepareStatementCount());
+    }
+
+    private User persistUser(String username) {
+        User user = new User(username, username + "@example.com", "password");
+        entityManager.persist(user);
+        return user;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.multiuser_online_editing.service.collaboration;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 操作变换：并发操作按任意顺序应用后结果相同，差异操作能把旧文本变为新文本
+ */
+class TextOperationTest {
+
+    private static final String ALPHABET = "ab c\n文档😀";
+
+    private final Random random = new Random(42);
+
+    @Test
+    void transformConverges() {
+        for (int round = 0; round < 2000; ++round) {
+            String text = randomString(random.nextInt(20));
+            TextOperation a = randomOperation(text);
+            TextOperation b = randomOperation(text);
+
+            TextOperation[] primes = TextOperation.transform(a, b);
+            String ab = primes[1].apply(a.apply(text));
+            String ba = primes[0].apply(b.apply(text));
+            assertEquals(ab, ba, "text=" + text + " a=" + a.toJson() + " b=" + b.toJson());
+            assertEquals(a.getTargetLength(), primes[1].getBaseLength());
+            assertEquals(b.getTargetLength(), primes[0].getBaseLength());
+        }
+    }
+
+    @Test
+    void concurrentInsertsAtSamePositionPutFirstOperandFirst() {
+        TextOperation a = new TextOperation().retain(1).insert("x").retain(1);
+        TextOperation b = new TextOperation().retain(1).insert("y").retain(1);
+
+        TextOperation[] primes = TextOperation.transform(a, b);
+        assertEquals("1xy2", primes[1].apply(a.apply("12")));
+        assertEquals("1xy2", primes[0].apply(b.apply("12")));
+    }
+
+    @Test
+    void concurrentDeletesOfSameRangeDeleteOnce() {
+        TextOperation a = new TextOperation().retain(1).delete(3).retain(1);
+        TextOperation b = new TextOperation().retain(2).delete(3);
+
+        TextOperation[] primes = TextOperation.transform(a, b);
+        assertEquals("1", primes[1].apply(a.apply("12345")));
+        assertEquals("1", primes[0].apply(b.apply("12345")));
+    }
+
+    @Test
+    void transformRejectsDifferentBaseLengths() {
+        TextOperation a = new TextOperation().retain(2);
+        TextOperation b = new TextOperation().retain(3);
+        assertThrows(RuntimeException.class, () -> TextOperation.transform(a, b));
+    }
+
+    @Test
+    void applyRejectsLengthMismatch() {
+        TextOperation operation = new TextOperation().retain(2).insert("x");
+        assertThrows(RuntimeException.class, () -> operation.apply("abc"));
+    }
+
+    @Test
+    void diffTransformsOldTextIntoNewText() {
+        for (int round = 0; round < 2000; ++round) {
+            String oldText = randomString(random.nextInt(20));
+            String newText = randomOperation(oldText).apply(oldText);
+            TextOperation diff = TextOperation.diff(oldText, newText);
+            assertEquals(newText, diff.apply(oldText));
+            assertEquals(oldText.length(), diff.getBaseLength());
+            assertEquals(newText.length(), diff.getTargetLength());
+        }
+        assertTrue(TextOperation.diff("same", "same").isNoop());
+        assertEquals(List.of(2, "XY", -1, 1), TextOperation.diff("abcd", "abXYd").toJson());
+    }
+
+    @Test
+    void jsonRoundTrip() {
+        TextOperation operation = new TextOperation().retain(3).insert("ab").delete(2).retain(1);
+        assertEquals(List.of(3, "ab", -2, 1), operation.toJson());
+        assertEquals(operation.toJson(), TextOperation.fromJson(operation.toJson()).toJson());
+        // 删除之后紧跟的插入规范化为插入在前
+        assertEquals(List.of("x", -1), new TextOperation().delete(1).insert("x").toJson());
+    }
+
+    // 依次随机保留、删除或插入，覆盖整个文本
+    private TextOperation randomOperation(String text) {
+        TextOperation operation = new TextOperation();
+        int remaining = text.length();
+        while (remaining > 0) {
+            int n = 1 + random.nextInt(Math.min(remaining, 5));
+            switch (random.nextInt(3)) {
+                case 0 -> operation.retain(n);
+                case 1 -> operation.delete(n);
+                default -> {
+                    operation.insert(randomString(1 + random.nextInt(3)));
+                    continue;
+                }
+            }
+            remaining -= n;
+        }
+        if (random.nextBoolean()) {
+            operation.insert(randomString(1 + random.nextInt(3)));
+        }
+        return operation;
+    }
+
+    private String randomString(int length) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; ++i) {
+            text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return text.toString();
+    }
+}
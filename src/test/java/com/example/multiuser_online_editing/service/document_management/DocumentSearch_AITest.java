@@ -0,0 +1,153 @@
+package com.example.multiuser_online_editing.service.document_management;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * BM25评分的前k篇选择：与对全部候选文档排序的结果一致，得分相同时更新时间较近的在前，并行评分结果不变
+ */
+class DocumentSearch_AITest {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    @Test
+    void tiesAreBrokenByRecency() {
+        // 三篇文档长度和词频都相同，按更新时间名次排列
+        int[] lengths = {10, 10, 10};
+        int[] recency = {2, 0, 1};
+        int[][] documents = {{0, 1, 2}};
+        int[][] frequencies = {{1, 1, 1}};
+
+        int[] top = DocumentSearch_AI.advancedSearch_AI(lengths, recency, documents, frequencies, new int[]{1},
+                100, 10, new int[]{3}, K1, B, 10, null);
+        assertArrayEquals(new int[]{1, 2, 0}, top);
+
+        top = DocumentSearch_AI.advancedSearch_AI(lengths, recency, documents, frequencies, new int[]{1},
+                100, 10, new int[]{3}, K1, B, 2, null);
+        assertArrayEquals(new int[]{1, 2}, top);
+    }
+
+    @Test
+    void higherScoreWinsOverRecency() {
+        int[] lengths = {10, 10};
+        int[] recency = {0, 1};
+        int[][] documents = {{0, 1}};
+        int[][] frequencies = {{1, 3}};
+
+        int[] top = DocumentSearch_AI.advancedSearch_AI(lengths, recency, documents, frequencies, new int[]{1},
+                100, 10, new int[]{2}, K1, B, 10, null);
+        assertArrayEquals(new int[]{1, 0}, top);
+    }
+
+    @Test
+    void onlyDocumentsWithPostingsAreReturned() {
+        int[] lengths = {10, 10, 10, 10};
+        int[] recency = {0, 1, 2, 3};
+        int[][] documents = {{1}, {3}};
+        int[][] frequencies = {{1}, {2}};
+
+        int[] top = DocumentSearch_AI.advancedSearch_AI(lengths, recency, documents, frequencies, new int[]{1, 1},
+                100, 10, new int[]{5, 5}, K1, B, 10, null);
+        assertArrayEquals(new int[]{3, 1}, top);
+        assertEquals(0, DocumentSearch_AI.advancedSearch_AI(lengths, recency, documents, frequencies, new int[]{1, 1},
+                100, 10, new int[]{5, 5}, K1, B, 0, null).length);
+    }
+
+    @Test
+    void topKMatchesFullSortSequentialAndParallel() {
+        Random random = new Random(3);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int round = 0; round < 20; ++round) {
+                int candidates = 1 + random.nextInt(5000);
+                int terms = 1 + random.nextInt(3);
+
+                // 长度和词频只取很少几个值，制造大量得分相同的文档
+                int[] lengths = new int[candidates];
+                for (int d = 0; d < candidates; ++d) {
+                    lengths[d] = 5 + 5 * random.nextInt(3);
+                }
+                int[] recency = permutation(candidates, random);
+                int[][] documents = new int[terms][];
+                int[][] frequencies = new int[terms][];
+                int[] queryFrequencies = new int[terms];
+                int[] documentFrequencies = new int[terms];
+                for (int t = 0; t < terms; ++t) {
+                    List<Integer> postings = new ArrayList<>();
+                    for (int d = 0; d < candidates; ++d) {
+                        if (random.nextInt(3) == 0) postings.add(d);
+                    }
+                    documents[t] = postings.stream().mapToInt(Integer::intValue).toArray();
+                    frequencies[t] = new int[documents[t].length];
+                    for (int i = 0; i < frequencies[t].length; ++i) {
+                        frequencies[t][i] = 1 + random.nextInt(2);
+                    }
+                    queryFrequencies[t] = 1 + random.nextInt(2);
+                    documentFrequencies[t] = documents[t].length + random.nextInt(100);
+                }
+                long totalDocuments = candidates + random.nextInt(1000);
+                double averageLength = 10;
+                int limit = 1 + random.nextInt(50);
+
+                int[] expected = fullSort(lengths, recency, documents, frequencies, queryFrequencies,
+                        totalDocuments, averageLength, documentFrequencies, limit);
+                assertArrayEquals(expected, DocumentSearch_AI.advancedSearch_AI(lengths, recency, documents, frequencies,
+                        queryFrequencies, totalDocuments, averageLength, documentFrequencies, K1, B, limit, null));
+                assertArrayEquals(expected, DocumentSearch_AI.advancedSearch_AI(lengths, recency, documents, frequencies,
+                        queryFrequencies, totalDocuments, averageLength, documentFrequencies, K1, B, limit, pool));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // 对所有有得分的文档按得分降序、更新时间名次升序完整排序后取前limit篇（逐词累加得分，与被测实现的累加顺序相同）
+    private static int[] fullSort(int[] lengths, int[] recency, int[][] documents, int[][] frequencies,
+                                  int[] queryFrequencies, long totalDocuments, double averageLength,
+                                  int[] documentFrequencies, int limit) {
+        double[] scores = new double[lengths.length];
+        boolean[] matched = new boolean[lengths.length];
+        for (int t = 0; t < documents.length; ++t) {
+            long total = Math.max(totalDocuments, documentFrequencies[t]);
+            double idf = Math.log(1 + (total - documentFrequencies[t] + 0.5) / (documentFrequencies[t] + 0.5));
+            double weight = idf * queryFrequencies[t];
+            for (int i = 0; i < documents[t].length; ++i) {
+                int d = documents[t][i];
+                double frequency = frequencies[t][i];
+                double norm = K1 * (1 - B + B * lengths[d] / averageLength);
+                scores[d] += weight * frequency * (K1 + 1) / (frequency + norm);
+                matched[d] = true;
+            }
+        }
+
+        List<Integer> ranked = new ArrayList<>();
+        for (int d = 0; d < lengths.length; ++d) {
+            if (matched[d]) ranked.add(d);
+        }
+        ranked.sort(Comparator.comparingDouble((Integer d) -> -scores[d]).thenComparingInt(d -> recency[d]));
+        return ranked.subList(0, Math.min(limit, ranked.size())).stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int[] permutation(int n, Random random) {
+        int[] values = new int[n];
+        for (int i = 0; i < n; ++i) {
+            values[i] = i;
+        }
+        for (int i = n - 1; i > 0; --i) {
+            int j = random.nextInt(i + 1);
+            int swap = values[i];
+            values[i] = values[j];
+            values[j] = swap;
+        }
+        return values;
+    }
+}
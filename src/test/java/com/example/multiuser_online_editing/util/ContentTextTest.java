@@ -0,0 +1,79 @@
+package com.example.multiuser_online_editing.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * HTML正文转纯文本：块级标签换成空格，其余标签去掉，解码常见实体，合并空白
+ */
+class ContentTextTest {
+
+    @Test
+    void blockTagsSeparateWords() {
+        assertEquals("Hello World", ContentText.toPlainText("<p>Hello</p><p>World</p>"));
+        assertEquals("a b", ContentText.toPlainText("a<br>b"));
+        assertEquals("a b", ContentText.toPlainText("a<BR/>b"));
+        assertEquals("a b", ContentText.toPlainText("a<br />b"));
+        assertEquals("标题 正文", ContentText.toPlainText("<h1>标题</h1>正文"));
+        assertEquals("1 2", ContentText.toPlainText("<ul><li>1</li><li>2</li></ul>"));
+        assertEquals("x y", ContentText.toPlainText("<table><tr><td>x</td></tr><tr><td>y</td></tr></table>"));
+    }
+
+    @Test
+    void inlineTagsAreRemovedWithoutSpace() {
+        assertEquals("bold", ContentText.toPlainText("<b>bo</b>ld"));
+        assertEquals("link", ContentText.toPlainText("<a href=\"/x\">li</a><span class=\"k\">nk</span>"));
+        // 只按完整的标签名判断块级标签
+        assertEquals("xy", ContentText.toPlainText("<bread>x</bread>y"));
+        assertEquals("xy", ContentText.toPlainText("x</pa>y"));
+    }
+
+    @Test
+    void entitiesAreDecodedOnce() {
+        assertEquals("a b", ContentText.toPlainText("a&nbsp;&nbsp;b"));
+        assertEquals("<div>", ContentText.toPlainText("&lt;div&gt;"));
+        assertEquals("\"x'", ContentText.toPlainText("&quot;x&#39;"));
+        assertEquals("&lt;", ContentText.toPlainText("&amp;lt;"));
+        assertEquals("&copy; &", ContentText.toPlainText("&copy; &"));
+    }
+
+    @Test
+    void malformedHtml() {
+        // 之后没有'>'的'<'按普通字符保留
+        assertEquals("x<y", ContentText.toPlainText("x<y"));
+        assertEquals("<p class=", ContentText.toPlainText("<p class="));
+        assertEquals("a>b", ContentText.toPlainText("a>b"));
+        // '<'到其后第一个'>'之间都是标签
+        assertEquals("1 0", ContentText.toPlainText("1 < 2 > 0"));
+        assertEquals("x", ContentText.toPlainText("<<p>x"));
+        assertEquals("ab", ContentText.toPlainText("a<p <br>b"));
+        String unclosed = "<".repeat(100000);
+        assertEquals(unclosed, ContentText.toPlainText(unclosed));
+    }
+
+    @Test
+    void whitespaceIsCollapsedAndTrimmed() {
+        assertEquals("a b", ContentText.toPlainText("  <p> a \n\t b </p> "));
+        assertEquals("", ContentText.toPlainText("<p></p><br>"));
+        assertEquals("", ContentText.toPlainText(null));
+    }
+
+    @Test
+    void lowerPlainTextKeepsPositions() {
+        String html = "<P>ABC</P><div>Déf&nbsp;GH</div>";
+        String plain = ContentText.toPlainText(html);
+        assertEquals("ABC Déf GH", plain);
+        assertEquals(plain.toLowerCase(), ContentText.toLowerPlainText(html));
+    }
+
+    @Test
+    void snippetIsTruncated() {
+        String text = "字".repeat(ContentText.SNIPPET_LENGTH + 10);
+        String snippet = ContentText.snippet("<p>" + text + "</p>");
+        assertEquals(ContentText.SNIPPET_LENGTH, snippet.length());
+        assertTrue(snippet.endsWith("..."));
+        assertEquals("short", ContentText.snippet("<p>short</p>"));
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.multiuser_online_editing.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 词位置的差值变长整数编码
+ */
+class PositionCodecTest {
+
+    @Test
+    void smallGapsTakeOneByte() {
+        byte[] bytes = PositionCodec.encode(new int[]{0, 1, 5, 132}, 4);
+        assertEquals(4, bytes.length);
+        assertArrayEquals(new int[]{0, 1, 5, 132}, PositionCodec.decode(bytes));
+    }
+
+    @Test
+    void multiByteBoundaries() {
+        // 差值为127、128、16383、16384、2097152时分别占1、2、2、3、4个字节
+        int[] positions = {127, 255, 16638, 33022, 2130174};
+        byte[] bytes = PositionCodec.encode(positions.clone(), positions.length);
+        assertEquals(1 + 2 + 2 + 3 + 4, bytes.length);
+        assertArrayEquals(positions, PositionCodec.decode(bytes));
+    }
+
+    @Test
+    void largeGaps() {
+        int[] positions = {0, Integer.MAX_VALUE};
+        byte[] bytes = PositionCodec.encode(positions.clone(), positions.length);
+        assertEquals(1 + 5, bytes.length);
+        assertArrayEquals(positions, PositionCodec.decode(bytes));
+        assertArrayEquals(new int[]{Integer.MAX_VALUE}, PositionCodec.decode(PositionCodec.encode(new int[]{Integer.MAX_VALUE}, 1)));
+    }
+
+    @Test
+    void sortsOnlyTheEncodedPrefix() {
+        int[] positions = {9, 3, 3, 7, -1};
+        byte[] bytes = PositionCodec.encode(positions, 4);
+        assertArrayEquals(new int[]{3, 3, 7, 9}, PositionCodec.decode(bytes));
+        assertEquals(-1, positions[4]);
+    }
+
+    @Test
+    void emptyList() {
+        assertEquals(0, PositionCodec.encode(new int[0], 0).length);
+        assertEquals(0, PositionCodec.decode(new byte[0]).length);
+    }
+
+    @Test
+    void randomRoundTrip() {
+        Random random = new Random(7);
+        for (int round = 0; round < 1000; ++round) {
+            int count = random.nextInt(50);
+            int[] positions = new int[count];
+            for (int i = 0; i < count; ++i) {
+                // 混合很近和很远的位置，覆盖各种字节数
+                positions[i] = random.nextBoolean() ? random.nextInt(300) : random.nextInt(Integer.MAX_VALUE);
+            }
+            int[] expected = positions.clone();
+            Arrays.sort(expected);
+            assertArrayEquals(expected, PositionCodec.decode(PositionCodec.encode(positions, count)));
+        }
+    }
+}